@@ -0,0 +1,243 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The BenchmarkHarness times small pieces of code the same way JMH does in its default mode:
+ * a few warmup iterations so the JIT settles, then several timed iterations reported as
+ * average nanoseconds per operation with a 99.9% error margin.<p>
+ * Alongside the time it reports what JMH's gc profiler reports: bytes allocated per operation
+ * (from the thread's allocation counter) and the number and duration of garbage collections.<p>
+ * benchThreads() runs a benchmark on several threads at once, like JMH's @Threads, to show how it scales.
+ */
+
+public class BenchmarkHarness {
+
+    /**
+     * One operation to measure. The result is handed back so the JIT can't throw the work away.
+     */
+    public interface Op {
+        Object run();
+    }
+
+    // the JIT can't prove the result never equals this, so it has to compute every result
+    private static volatile Object trap = new Object();
+    private static Object sink;
+
+    // Student's t for a two-sided 99.9% interval, indexed by degrees of freedom (1 to 30), as JMH uses
+    private static final double[] T_999 = {Double.NaN,
+            636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+            4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+            3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646};
+
+    // instance variables
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final long iterationNanos;
+    private final String filter;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<GarbageCollectorMXBean> collectors;
+
+    /**
+     * @param warmupIterations How many untimed iterations to run first.
+     * @param measureIterations How many timed iterations to report on.
+     * @param iterationMillis How long each iteration runs for.
+     * @param filter Only benchmarks whose name contains this are run; an empty String runs everything.
+     */
+    public BenchmarkHarness(int warmupIterations, int measureIterations, long iterationMillis, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+        this.filter = filter;
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    }
+
+    public static String header() {
+        return String.format("%-40s %12s %10s %12s %9s %9s", "Benchmark", "ns/op", "error", "B/op", "gc.count", "gc.ms");
+    }
+
+    /**
+     * Runs one benchmark and prints its line of results.
+     *
+     * @param name The name shown in the results.
+     * @param op The operation to measure.
+     */
+    public void bench(String name, Op op) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op);
+        }
+
+        double[] nanosPerOp = new double[measureIterations];
+        long totalOps = 0;
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        for (int i = 0; i < measureIterations; i++) {
+            long start = System.nanoTime();
+            long ops = iteration(op);
+            nanosPerOp[i] = (double) (System.nanoTime() - start) / ops;
+            totalOps += ops;
+        }
+        double bytesPerOp = (double) (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / totalOps;
+
+        System.out.println(String.format("%-40s %12.3f %10.3f %12.1f %9d %9d", name, mean(nanosPerOp), error(nanosPerOp),
+                bytesPerOp, gcCount() - gcCountBefore, gcTime() - gcTimeBefore));
+    }
+
+    /**
+     * Runs one benchmark on several threads at once and prints its line of results.
+     * Every thread gets its own operation from the factory. The ns/op is the wall-clock time divided by
+     * the operations all the threads managed between them, so it goes down as throughput goes up.
+     *
+     * @param name The name shown in the results.
+     * @param threadCount How many threads run the operation.
+     * @param factory Makes each thread's operation.
+     */
+    public void benchThreads(String name, int threadCount, Supplier<Op> factory) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        Op[] ops = new Op[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            ops[i] = factory.get();
+        }
+        LongAdder allocated = new LongAdder();
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(ops, allocated);
+        }
+
+        allocated.reset();
+        double[] nanosPerOp = new double[measureIterations];
+        long totalOps = 0;
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        for (int i = 0; i < measureIterations; i++) {
+            long start = System.nanoTime();
+            long opsDone = iteration(ops, allocated);
+            nanosPerOp[i] = (double) (System.nanoTime() - start) / opsDone;
+            totalOps += opsDone;
+        }
+        double bytesPerOp = (double) allocated.sum() / totalOps;
+        System.out.println(String.format("%-40s %12.3f %10.3f %12.1f %9d %9d", name, mean(nanosPerOp), error(nanosPerOp),
+                bytesPerOp, gcCount() - gcCountBefore, gcTime() - gcTimeBefore));
+    }
+
+    /**
+     * Runs one iteration on a thread per operation and waits for them all to finish.
+     *
+     * @return The number of operations all the threads ran.
+     */
+    private long iteration(Op[] ops, LongAdder allocated) {
+        LongAdder opsDone = new LongAdder();
+        Thread[] workers = new Thread[ops.length];
+        for (int i = 0; i < ops.length; i++) {
+            Op op = ops[i];
+            workers[i] = new Thread(() -> {
+                long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+                opsDone.add(iteration(op));
+                allocated.add(threads.getCurrentThreadAllocatedBytes() - allocatedBefore);
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the benchmark threads", e);
+            }
+        }
+        return opsDone.sum();
+    }
+
+    /**
+     * Calls the operation over and over until the iteration time is up.
+     * The clock is only checked every 1024 calls so that reading it doesn't swamp fast operations.
+     *
+     * @return The number of times the operation ran.
+     */
+    private long iteration(Op op) {
+        long deadline = System.nanoTime() + iterationNanos;
+        long ops = 0;
+        do {
+            for (int i = 0; i < 1024; i++) {
+                Object result = op.run();
+                if (result == trap) {
+                    sink = result;
+                }
+            }
+            ops += 1024;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            time += Math.max(collector.getCollectionTime(), 0);
+        }
+        return time;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Half the width of the 99.9% confidence interval, the same figure JMH prints as its error.
+     * With only a handful of iterations the interval is several times wider than the normal approximation
+     * would say, so it uses Student's t for n - 1 degrees of freedom.
+     */
+    private static double error(double[] values) {
+        if (values.length < 2) {
+            return Double.NaN;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        double stdDev = Math.sqrt(squares / (values.length - 1));
+        return tQuantile(values.length - 1) * stdDev / Math.sqrt(values.length);
+    }
+
+    /**
+     * Past 30 degrees of freedom, rounds down to the nearest of 30, 40, 60 and 120, which errs on the wide side.
+     */
+    private static double tQuantile(int degreesOfFreedom) {
+        if (degreesOfFreedom < T_999.length) {
+            return T_999[degreesOfFreedom];
+        }
+        if (degreesOfFreedom < 40) {
+            return 3.646;
+        }
+        if (degreesOfFreedom < 60) {
+            return 3.551;
+        }
+        if (degreesOfFreedom < 120) {
+            return 3.460;
+        }
+        return 3.373;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Benchmarks for the hot paths of the game: the Hunter's kit, the Shop's prices, building Towns,
+ * brawling, whole headless game turns (on a GameState and on a PackedState), and trading in a shared
+ * Market on 1, 8 and 64 threads.<p>
+ * Every benchmark uses a fixed seed, so runs can be compared against each other.<p>
+ *
+ * Usage: java Benchmarks [filter] [warmupIterations] [measureIterations] [iterationMillis]
+ */
+
+public class Benchmarks {
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int measure = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long millis = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+        BenchmarkHarness harness = new BenchmarkHarness(warmup, measure, millis, filter);
+
+        System.out.println(BenchmarkHarness.header());
+        hunterBenchmarks(harness);
+        shopBenchmarks(harness);
+        townBenchmarks(harness);
+        gameBenchmarks(harness);
+        packedBenchmarks(harness);
+        marketBenchmarks(harness);
+    }
+
+    private static void hunterBenchmarks(BenchmarkHarness harness) {
+        Hunter hunter = stockedHunter();
+        harness.bench("Hunter.hasItemInKit.hit", () -> hunter.hasItemInKit("boots"));
+        harness.bench("Hunter.hasItemInKit.miss", () -> hunter.hasItemInKit("shovel"));
+
+        // each buy is undone straight away so the hunter looks the same on every call
+        Hunter buyer = stockedHunter();
+        harness.bench("Hunter.buyItem", () -> {
+            boolean bought = buyer.buyItem("shovel", 8);
+            buyer.removeItemFromKit("shovel");
+            buyer.changeGold(8);
+            return bought;
+        });
+        Hunter seller = stockedHunter();
+        harness.bench("Hunter.sellItem", () -> {
+            boolean sold = seller.sellItem("water", 1);
+            seller.addItem("water");
+            seller.changeGold(-1);
+            return sold;
+        });
+        harness.bench("Hunter.infoString", hunter::infoString);
+    }
+
+    private static void shopBenchmarks(BenchmarkHarness harness) {
+        Shop shop = new Shop(Difficulty.NORMAL.getProfile().getPrices());
+        shop.enter(stockedHunter());
+        harness.bench("Shop.getCostOfItem.first", () -> shop.getCostOfItem("water"));
+        harness.bench("Shop.getCostOfItem.last", () -> shop.getCostOfItem("shovel"));
+        harness.bench("Shop.getCostOfItem.unknown", () -> shop.getCostOfItem("crown"));
+        harness.bench("Shop.getBuyBackCost", () -> shop.getBuyBackCost("boots"));
+        harness.bench("Shop.inventory", shop::inventory);
+    }
+
+    private static void townBenchmarks(BenchmarkHarness harness) {
+        RandomSource random = new SplittableRandomSource(SEED);
+        Shop shop = new Shop(Difficulty.NORMAL.getProfile().getPrices());
+        harness.bench("Town.new", () -> new Town(shop, Difficulty.NORMAL.getProfile(), random));
+
+        Hunter hunter = new Hunter("bench", Integer.MAX_VALUE / 2, false);
+        Town town = new Town(shop, Difficulty.NORMAL.getProfile(), random);
+        town.hunterArrives(hunter);
+        harness.bench("Town.lookForTrouble", () -> {
+            town.lookForTrouble();
+            return town.getLatestNews();
+        });
+    }
+
+    private static void gameBenchmarks(BenchmarkHarness harness) {
+        for (Difficulty difficulty : new Difficulty[] {Difficulty.EASY, Difficulty.NORMAL, Difficulty.HARD}) {
+            GameLoop loop = new GameLoop(difficulty);
+            harness.bench("GameEngine.step." + difficulty.name().toLowerCase(), loop::turn);
+        }
+    }
+
+    private static void packedBenchmarks(BenchmarkHarness harness) {
+        for (Difficulty difficulty : new Difficulty[] {Difficulty.EASY, Difficulty.NORMAL, Difficulty.HARD}) {
+            PackedLoop loop = new PackedLoop(difficulty);
+            harness.bench("PackedState.step." + difficulty.name().toLowerCase(), loop::turn);
+        }
+
+        // trying every menu choice from one state, the way a search expands a node
+        PackedState rules = new PackedState(Difficulty.NORMAL.getProfile());
+        RandomSource random = new SplittableRandomSource(SEED);
+        long root = rules.start(random);
+        int[] codes = {Action.hunt().encode(), Action.dig().encode(), Action.brawl().encode(), Action.move().encode(),
+                Action.buy("rope", true).encode(), Action.buy("shovel", true).encode()};
+        harness.bench("PackedState.branch", () -> {
+            long sum = 0;
+            for (int code : codes) {
+                sum += rules.step(root, code, random);
+            }
+            // an enum rather than the long, so boxing the result doesn't show up as allocation
+            return PackedState.status(sum);
+        });
+    }
+
+    /**
+     * Every thread plays its own game, with its own hunter and shop, and all the shops trade in one Market.
+     * The threads all buy and sell the same item in the same region, which is as contended as the market gets.
+     */
+    private static void marketBenchmarks(BenchmarkHarness harness) {
+        Market market = new Market();
+        for (int threads : new int[] {1, 8, 64}) {
+            harness.benchThreads("Market.buyAndSell." + threads + "threads", threads, () -> {
+                Hunter hunter = new Hunter("bench", 1000, false);
+                Shop shop = new Shop(Difficulty.NORMAL.getProfile().getPrices());
+                shop.tradeAt(market);
+                shop.enter(hunter, 0);
+                return () -> {
+                    int bought = shop.buyItem("rope");
+                    int sold = shop.sellItem("rope");
+                    // keep the hunter's gold where it started so every call can afford the rope
+                    hunter.changeGold(1000 - hunter.getGold());
+                    return bought + sold;
+                };
+            });
+        }
+        harness.bench("Market.price", () -> market.price(0, Item.ROPE, 10));
+    }
+
+    /**
+     * Plays the GreedyBot's strategy on a PackedState, so the cost per turn can be compared with GameLoop's.
+     */
+    private static class PackedLoop {
+        private final PackedState rules;
+        private final RandomSource random = new SplittableRandomSource(SEED);
+        private long state;
+        private int turns;
+
+        PackedLoop(Difficulty difficulty) {
+            rules = new PackedState(difficulty.getProfile());
+            state = rules.start(random);
+        }
+
+        Outcome.Status turn() {
+            state = rules.step(state, GreedyBot.choose(rules, state), random);
+            turns++;
+            Outcome.Status status = PackedState.status(state);
+            if (status != Outcome.Status.PLAYING || turns == 1000) {
+                state = rules.start(random);
+                turns = 0;
+            }
+            return status;
+        }
+    }
+
+    /**
+     * A hunter carrying one of everything the shop sells apart from the shovel.
+     */
+    private static Hunter stockedHunter() {
+        Hunter hunter = new Hunter("bench", 1000, false);
+        hunter.addItem("water");
+        hunter.addItem("rope");
+        hunter.addItem("machete");
+        hunter.addItem("horse");
+        hunter.addItem("boat");
+        hunter.addItem("boots");
+        hunter.addTreasure("crown");
+        return hunter;
+    }
+
+    /**
+     * Plays games with the GreedyBot one turn at a time, starting a new game whenever one ends.
+     * The cost of setting up each new game is included, spread over the turns of the game.
+     */
+    private static class GameLoop {
+        private final Difficulty difficulty;
+        private final GameEngine engine = new GameEngine();
+        private final BotPolicy bot = new GreedyBot();
+        private GameState state;
+        private long games;
+        private int turns;
+
+        GameLoop(Difficulty difficulty) {
+            this.difficulty = difficulty;
+            newGame();
+        }
+
+        Outcome turn() {
+            Outcome outcome = engine.step(state, bot.chooseAction(state));
+            turns++;
+            if (outcome.isOver() || turns == 1000) {
+                newGame();
+            }
+            return outcome;
+        }
+
+        private void newGame() {
+            state = new GameState("bench", difficulty, SplittableRandomSource.seedFor(SEED, games++));
+            turns = 0;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * The Action class represents a single move the player makes from the main menu.<p>
+ * Buying and selling carry the name of the item and whether the player confirmed the deal,
+ * so the whole shop conversation fits in one Action.
+ */
+
+public class Action {
+    public enum Type { BUY, SELL, EXPLORE, HUNT, MOVE, BRAWL, DIG, QUIT }
+
+    private static final Type[] TYPES = Type.values();
+
+    // the actions that don't carry any extra information can be shared
+    private static final Action EXPLORE = new Action(Type.EXPLORE, null, false);
+    private static final Action HUNT = new Action(Type.HUNT, null, false);
+    private static final Action MOVE = new Action(Type.MOVE, null, false);
+    private static final Action BRAWL = new Action(Type.BRAWL, null, false);
+    private static final Action DIG = new Action(Type.DIG, null, false);
+    private static final Action QUIT = new Action(Type.QUIT, null, false);
+
+    // instance variables
+    private final Type type;
+    private final String item;
+    private final boolean confirmed;
+
+    private Action(Type type, String item, boolean confirmed) {
+        this.type = type;
+        this.item = item;
+        this.confirmed = confirmed;
+    }
+
+    public static Action buy(String item, boolean confirmed) {
+        return new Action(Type.BUY, item, confirmed);
+    }
+
+    public static Action sell(String item, boolean confirmed) {
+        return new Action(Type.SELL, item, confirmed);
+    }
+
+    public static Action explore() {
+        return EXPLORE;
+    }
+
+    public static Action hunt() {
+        return HUNT;
+    }
+
+    public static Action move() {
+        return MOVE;
+    }
+
+    public static Action brawl() {
+        return BRAWL;
+    }
+
+    public static Action dig() {
+        return DIG;
+    }
+
+    public static Action quit() {
+        return QUIT;
+    }
+
+    /**
+     * Maps a main menu letter to the matching action.
+     * Buying and selling need an item, so they are built with buy() and sell() instead.
+     *
+     * @param choice The menu letter, already in lower case.
+     * @return The matching Action, or null if the letter isn't a menu option.
+     */
+    public static Action fromMenuChoice(String choice) {
+        if (choice.equals("e")) {
+            return EXPLORE;
+        } else if (choice.equals("h")) {
+            return HUNT;
+        } else if (choice.equals("m")) {
+            return MOVE;
+        } else if (choice.equals("l")) {
+            return BRAWL;
+        } else if (choice.equals("d")) {
+            return DIG;
+        } else if (choice.equals("x")) {
+            return QUIT;
+        }
+        return null;
+    }
+
+    /**
+     * Packs the action into a small number for the journal:
+     * bits 0-2 hold the type, bit 3 whether the deal was confirmed,
+     * and the bits above that hold the Item's ordinal + 1 (0 if the item isn't a real Item).
+     *
+     * @return The packed action.
+     */
+    public int encode() {
+        int code = type.ordinal();
+        if (confirmed) {
+            code |= 1 << 3;
+        }
+        if (item != null) {
+            Item parsed = Item.fromName(item);
+            if (parsed != null) {
+                code |= (parsed.ordinal() + 1) << 4;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Unpacks an action made by encode().
+     * An item the shop had never heard of comes back as "?", which the shop treats the same way.
+     *
+     * @param code The packed action.
+     * @return The Action.
+     */
+    public static Action decode(int code) {
+        Type type = TYPES[code & 7];
+        boolean confirmed = (code & (1 << 3)) != 0;
+        int itemCode = code >>> 4;
+        String item = itemCode == 0 ? "?" : Item.fromOrdinal(itemCode - 1).getName();
+        switch (type) {
+            case BUY:
+                return buy(item, confirmed);
+            case SELL:
+                return sell(item, confirmed);
+            case EXPLORE:
+                return EXPLORE;
+            case HUNT:
+                return HUNT;
+            case MOVE:
+                return MOVE;
+            case BRAWL:
+                return BRAWL;
+            case DIG:
+                return DIG;
+            default:
+                return QUIT;
+        }
+    }
+
+    /**
+     * @return What the action is, the way a player would say it, for hints.
+     */
+    public String describe() {
+        switch (type) {
+            case BUY:
+                return "buy the " + item;
+            case SELL:
+                return "sell the " + item;
+            case EXPLORE:
+                return "explore the surrounding terrain";
+            case HUNT:
+                return "hunt for treasure in the town";
+            case MOVE:
+                return "move on to a different town";
+            case BRAWL:
+                return "look for trouble";
+            case DIG:
+                return "dig for gold";
+            default:
+                return "give up the hunt";
+        }
+    }
+
+    // accessors
+    public Type getType() {
+        return type;
+    }
+
+    public String getItem() {
+        return item;
+    }
+
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+}
@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The BalanceSweep tries out different DifficultyProfiles to find rules that give each mode the win rate we want.<p>
+ * Every candidate profile is played by simulation with a bot. Candidates are played side by side, and the games
+ * of each candidate are split up further, all on one fork-join pool that lives for the whole sweep, so the
+ * worker threads are reused from candidate to candidate. Every candidate plays the same seeded games, which
+ * keeps the comparison between them fair. Results are cached by profile, so a point the search comes back
+ * to (or that two searches share) is only ever played once.<p>
+ * There are two ways to search the chosen settings:
+ * <ul>
+ * <li>--grid N plays N evenly spaced values of each setting across its range (every combination of them)
+ * and prints the win rate of each.</li>
+ * <li>Otherwise each mode is balanced with a random search: every round tries points scattered around the best
+ * one so far, keeps whichever is closest to the target, and narrows the search when nothing gets closer.</li>
+ * </ul>
+ * Usage: java BalanceSweep [--games N] [--rounds N] [--grid N] [--bot className] [--seed N]
+ * [--tune SETTING[=min:max],...] [MODE=targetWinRate ...]<p>
+ * For example: java BalanceSweep --tune starting_gold=5:100,toughness easy=0.8 normal=0.5 hard=0.3
+ */
+
+public class BalanceSweep {
+    // candidates tried around the best point in each round of a random search
+    private static final int CANDIDATES_PER_ROUND = 8;
+    // how far from the best point candidates start out, as a part of each setting's range
+    private static final double START_RADIUS = 0.25;
+
+    // instance variables
+    private final ForkJoinPool pool;
+    private final BatchRunner runner;
+    private final long gamesPerCandidate;
+    private final ConcurrentHashMap<DifficultyProfile, CompletableFuture<SimulationStats>> results = new ConcurrentHashMap<>();
+    private final LongAdder simulated = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * @param pool The pool every simulation runs on.
+     * @param bot The policy that plays the games.
+     * @param maxTurns Games still going after this many actions are counted as timeouts.
+     * @param seed The seed that every candidate's games are worked out from.
+     * @param gamesPerCandidate How many games each candidate plays.
+     */
+    public BalanceSweep(ForkJoinPool pool, BotPolicy bot, int maxTurns, long seed, long gamesPerCandidate) {
+        this.pool = pool;
+        runner = new BatchRunner(pool, bot, maxTurns, seed);
+        this.gamesPerCandidate = gamesPerCandidate;
+    }
+
+    /**
+     * Plays a profile, or finds its stats in the cache if it has been played before.
+     * If another thread is already playing the same profile, this waits for its answer instead.
+     *
+     * @param profile The profile to play.
+     * @return The stats of its games.
+     */
+    public SimulationStats evaluate(DifficultyProfile profile) {
+        CompletableFuture<SimulationStats> mine = new CompletableFuture<>();
+        CompletableFuture<SimulationStats> cached = results.putIfAbsent(profile, mine);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached.join();
+        }
+        try {
+            mine.complete(runner.run(profile, gamesPerCandidate));
+            simulated.increment();
+        } catch (RuntimeException e) {
+            results.remove(profile, mine);
+            mine.completeExceptionally(e);
+        }
+        return mine.join();
+    }
+
+    /**
+     * Plays several profiles at the same time.
+     *
+     * @param profiles The profiles to play.
+     * @return Their stats, in the same order.
+     */
+    public List<SimulationStats> evaluateAll(List<DifficultyProfile> profiles) {
+        // a parallel stream started from inside the pool runs on the pool, next to the games it splits into
+        return pool.submit(() -> profiles.parallelStream().map(this::evaluate).toList()).join();
+    }
+
+    // accessors
+    public long getSimulated() {
+        return simulated.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Plays every combination of evenly spaced values of the given settings.
+     *
+     * @param base The profile the other settings come from.
+     * @param range The settings to vary, each with the lowest and highest value to try.
+     * @param steps How many values to try for each setting.
+     * @return The profiles played (leaving out any that aren't valid) and their stats.
+     */
+    public Map<DifficultyProfile, SimulationStats> grid(DifficultyProfile base, Map<DifficultyProfile.Setting, double[]> range,
+                                                         int steps) {
+        DifficultyProfile.Setting[] settings = range.keySet().toArray(new DifficultyProfile.Setting[0]);
+        List<DifficultyProfile> points = new ArrayList<>();
+        int[] step = new int[settings.length];
+        double[] values = new double[settings.length];
+        while (true) {
+            for (int i = 0; i < settings.length; i++) {
+                double[] bounds = range.get(settings[i]);
+                values[i] = steps == 1 ? bounds[0] : bounds[0] + (bounds[1] - bounds[0]) * step[i] / (steps - 1);
+            }
+            DifficultyProfile point = tryProfile(base, settings, values);
+            if (point != null && !points.contains(point)) {
+                points.add(point);
+            }
+            int i = 0;
+            while (i < settings.length && ++step[i] == steps) {
+                step[i++] = 0;
+            }
+            if (i == settings.length) {
+                break;
+            }
+        }
+        List<SimulationStats> stats = evaluateAll(points);
+        Map<DifficultyProfile, SimulationStats> grid = new LinkedHashMap<>();
+        for (int i = 0; i < points.size(); i++) {
+            grid.put(points.get(i), stats.get(i));
+        }
+        return grid;
+    }
+
+    /**
+     * Searches for the profile whose win rate is closest to the target, changing only the given settings.
+     *
+     * @param start The profile to start from.
+     * @param range The settings to change, each with the lowest and highest value allowed.
+     * @param target The win rate wanted, from 0 to 1.
+     * @param tolerance Stop once the win rate is this close to the target.
+     * @param rounds The most rounds to search for.
+     * @param random Where the candidate points come from.
+     * @return The best profile found.
+     */
+    public DifficultyProfile balance(DifficultyProfile start, Map<DifficultyProfile.Setting, double[]> range,
+                                     double target, double tolerance, int rounds, SplittableRandom random) {
+        DifficultyProfile.Setting[] settings = range.keySet().toArray(new DifficultyProfile.Setting[0]);
+        DifficultyProfile best = start;
+        double bestMiss = Math.abs(evaluate(best).getWinRate() - target);
+        double radius = START_RADIUS;
+        for (int round = 0; round < rounds && bestMiss > tolerance; round++) {
+            List<DifficultyProfile> candidates = new ArrayList<>();
+            double[] values = new double[settings.length];
+            for (int c = 0; c < CANDIDATES_PER_ROUND; c++) {
+                for (int i = 0; i < settings.length; i++) {
+                    double[] bounds = range.get(settings[i]);
+                    double value = best.get(settings[i]) + random.nextGaussian() * radius * (bounds[1] - bounds[0]);
+                    values[i] = Math.max(bounds[0], Math.min(bounds[1], value));
+                }
+                DifficultyProfile candidate = tryProfile(best, settings, values);
+                if (candidate != null) {
+                    candidates.add(candidate);
+                }
+            }
+            List<SimulationStats> stats = evaluateAll(candidates);
+            boolean improved = false;
+            for (int c = 0; c < candidates.size(); c++) {
+                double miss = Math.abs(stats.get(c).getWinRate() - target);
+                if (miss < bestMiss) {
+                    best = candidates.get(c);
+                    bestMiss = miss;
+                    improved = true;
+                }
+            }
+            if (!improved) {
+                radius /= 2;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return The profile with the settings changed, or null if those values don't make a valid profile.
+     */
+    private static DifficultyProfile tryProfile(DifficultyProfile base, DifficultyProfile.Setting[] settings, double[] values) {
+        try {
+            return base.with(settings, values);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a --tune list such as "starting_gold=5:100,toughness" into each setting's range.
+     */
+    private static Map<DifficultyProfile.Setting, double[]> parseTune(String list) {
+        Map<DifficultyProfile.Setting, double[]> range = new EnumMap<>(DifficultyProfile.Setting.class);
+        for (String entry : list.split(",")) {
+            String[] parts = entry.trim().split("=");
+            DifficultyProfile.Setting setting = DifficultyProfile.Setting.valueOf(parts[0].trim().toUpperCase());
+            double[] bounds = {setting.getMin(), setting.getMax()};
+            if (parts.length > 1) {
+                String[] minMax = parts[1].split(":");
+                bounds[0] = Double.parseDouble(minMax[0]);
+                bounds[1] = Double.parseDouble(minMax[1]);
+            }
+            range.put(setting, bounds);
+        }
+        return range;
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        long games = 20_000;
+        int rounds = 10;
+        int gridSteps = 0;
+        BotPolicy bot = new GreedyBot();
+        long seed = SplittableRandomSource.randomSeed();
+        Map<DifficultyProfile.Setting, double[]> range = parseTune("starting_gold=5:100,toughness");
+        Map<Difficulty, Double> targets = new EnumMap<>(Difficulty.class);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--games") && i + 1 < args.length) {
+                games = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--rounds") && i + 1 < args.length) {
+                rounds = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--grid") && i + 1 < args.length) {
+                gridSteps = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--bot") && i + 1 < args.length) {
+                bot = (BotPolicy) Class.forName(args[++i]).getDeclaredConstructor().newInstance();
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--tune") && i + 1 < args.length) {
+                range = parseTune(args[++i]);
+            } else if (args[i].contains("=")) {
+                String[] parts = args[i].split("=");
+                targets.put(Difficulty.valueOf(parts[0].toUpperCase()), Double.parseDouble(parts[1]));
+            }
+        }
+        if (targets.isEmpty()) {
+            targets.put(Difficulty.EASY, 0.8);
+            targets.put(Difficulty.NORMAL, 0.5);
+            targets.put(Difficulty.HARD, 0.3);
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        BalanceSweep sweep = new BalanceSweep(pool, bot, 1000, seed, games);
+        // the smallest difference in win rate that this many games can tell apart
+        double tolerance = 1 / Math.sqrt(games);
+        System.out.println("Sweeping " + range.keySet() + " with " + bot.getClass().getSimpleName() + ", " + games
+                + " games per candidate on " + pool.getParallelism() + " workers, seed " + seed);
+        long start = System.nanoTime();
+        for (Map.Entry<Difficulty, Double> entry : targets.entrySet()) {
+            Difficulty difficulty = entry.getKey();
+            double target = entry.getValue();
+            DifficultyProfile standard = difficulty.getProfile();
+            if (gridSteps > 0) {
+                DifficultyProfile closest = standard;
+                double closestMiss = Double.MAX_VALUE;
+                for (Map.Entry<DifficultyProfile, SimulationStats> point : sweep.grid(standard, range, gridSteps).entrySet()) {
+                    double winRate = point.getValue().getWinRate();
+                    System.out.printf("  %-60s win=%.2f%%%n", point.getKey(), 100 * winRate);
+                    if (Math.abs(winRate - target) < closestMiss) {
+                        closest = point.getKey();
+                        closestMiss = Math.abs(winRate - target);
+                    }
+                }
+                System.out.printf("%s target %.1f%%: closest point %s win=%.2f%%%n", difficulty, 100 * target,
+                        closest, 100 * sweep.evaluate(closest).getWinRate());
+            } else {
+                DifficultyProfile best = sweep.balance(standard, range, target, tolerance, rounds,
+                        new SplittableRandom(seed ^ difficulty.ordinal()));
+                System.out.printf("%s target %.1f%%: standard win=%.2f%%, balanced win=%.2f%% with %s%n", difficulty,
+                        100 * target, 100 * sweep.evaluate(standard).getWinRate(), 100 * sweep.evaluate(best).getWinRate(), best);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Played %d candidates (%d answered from the cache) in %.1fs%n",
+                sweep.getSimulated(), sweep.getCacheHits(), seconds);
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The BatchRunner plays a large number of games with a BotPolicy and reports how each difficulty turned out.<p>
+ * Games are split across all cores with fork-join. Each worker keeps its own SimulationStats and
+ * the results are merged as the tasks join, so no individual game is ever kept in memory.<p>
+ *
+ * Game number i of a batch is seeded from the batch seed, so any single game can be replayed on its own.<p>
+ * Given a results file, every game is also streamed to it with a ResultsWriter, for ResultsReader to go over later.<p>
+ *
+ * Usage: java BatchRunner [gamesPerMode] [maxTurns] [botClassName] [seed] [resultsFile]
+ * where botClassName can instead be a policy file written by the Solver (ending in .thp), which is played
+ * by a SolvedPolicy on the one difficulty it was solved for.
+ */
+
+public class BatchRunner {
+    // games played by one task before it stops splitting
+    private static final int GAMES_PER_TASK = 4096;
+
+    // instance variables
+    private final ForkJoinPool pool;
+    private final BotPolicy bot;
+    private final int maxTurns;
+    private final long seed;
+    private ResultsWriter results;
+
+    /**
+     * @param pool The pool to run the games on.
+     * @param bot The policy used to pick every action.
+     * @param maxTurns Games still going after this many actions are counted as timeouts.
+     * @param seed The seed that every game's seed is worked out from.
+     */
+    public BatchRunner(ForkJoinPool pool, BotPolicy bot, int maxTurns, long seed) {
+        this.pool = pool;
+        this.bot = bot;
+        this.maxTurns = maxTurns;
+        this.seed = seed;
+    }
+
+    /**
+     * Streams every game played from now on to a results file as well.
+     *
+     * @param results The writer to record to, or null to stop recording. The caller closes it.
+     */
+    public void recordTo(ResultsWriter results) {
+        this.results = results;
+    }
+
+    /**
+     * Plays the given number of games on one difficulty.
+     *
+     * @param difficulty The difficulty to play.
+     * @param games How many games to play.
+     * @return The combined stats of all the games.
+     */
+    public SimulationStats run(Difficulty difficulty, long games) {
+        return run(difficulty.getProfile(), games);
+    }
+
+    /**
+     * Plays the given number of games with the numbers in a profile.
+     * Game i is seeded the same whatever the profile, so two profiles are compared on the same games.
+     *
+     * @param profile The difficulty profile to play.
+     * @param games How many games to play.
+     * @return The combined stats of all the games.
+     */
+    public SimulationStats run(DifficultyProfile profile, long games) {
+        return pool.invoke(new GamesTask(profile, 0, games));
+    }
+
+    /**
+     * Plays one game to the end (or until maxTurns) and records it.
+     */
+    private void playGame(GameEngine engine, DifficultyProfile profile, long gameNumber, SimulationStats stats) {
+        GameState state = new GameState("bot", profile, SplittableRandomSource.seedFor(seed, gameNumber));
+        Outcome.Status status = Outcome.Status.PLAYING;
+        int turns = 0;
+        while (status == Outcome.Status.PLAYING && turns < maxTurns) {
+            status = engine.step(state, bot.chooseAction(state)).getStatus();
+            turns++;
+        }
+        stats.record(status, turns);
+        if (results != null) {
+            Hunter hunter = state.getHunter();
+            results.record(state.getSeed(), profile.getDifficulty(), turns, hunter.getGold(), hunter.getTreasureMask(), status);
+        }
+    }
+
+    /**
+     * Plays the games numbered [from, to), splitting in half until the range is small enough.
+     */
+    @SuppressWarnings("serial") // a ForkJoinTask is Serializable, but these are never serialized
+    private class GamesTask extends RecursiveTask<SimulationStats> {
+        private final DifficultyProfile profile;
+        private final long from;
+        private final long to;
+
+        GamesTask(DifficultyProfile profile, long from, long to) {
+            this.profile = profile;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationStats compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                GameEngine engine = new GameEngine();
+                SimulationStats stats = new SimulationStats(maxTurns);
+                for (long i = from; i < to; i++) {
+                    playGame(engine, profile, i, stats);
+                }
+                return stats;
+            }
+            long mid = (from + to) >>> 1;
+            GamesTask left = new GamesTask(profile, from, mid);
+            left.fork();
+            SimulationStats stats = new GamesTask(profile, mid, to).compute();
+            stats.merge(left.join());
+            return stats;
+        }
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException, IOException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        int maxTurns = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        BotPolicy bot = new GreedyBot();
+        Difficulty[] modes = {Difficulty.EASY, Difficulty.NORMAL, Difficulty.HARD, Difficulty.SAMURAI};
+        if (args.length > 2 && args[2].endsWith(".thp")) {
+            SolvedPolicy solved = SolvedPolicy.load(Path.of(args[2]));
+            bot = solved;
+            modes = new Difficulty[] {solved.getDifficulty()};
+        } else if (args.length > 2) {
+            bot = (BotPolicy) Class.forName(args[2]).getDeclaredConstructor().newInstance();
+        }
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : SplittableRandomSource.randomSeed();
+
+        BatchRunner runner = new BatchRunner(ForkJoinPool.commonPool(), bot, maxTurns, seed);
+        ResultsWriter results = null;
+        if (args.length > 4) {
+            results = new ResultsWriter(Path.of(args[4]), maxTurns);
+            runner.recordTo(results);
+        }
+        System.out.println("Playing " + games + " games per mode with " + bot.getClass().getSimpleName()
+                + " on " + ForkJoinPool.commonPool().getParallelism() + " workers, seed " + seed);
+        for (Difficulty difficulty : modes) {
+            long start = System.nanoTime();
+            SimulationStats stats = runner.run(difficulty, games);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(stats.report(difficulty.name())
+                    + String.format(" (%.1fs, %.0f games/s)", seconds, stats.getGames() / seconds));
+        }
+        if (results != null) {
+            results.close();
+            System.out.println("Wrote " + results.getGamesWritten() + " games to " + args[4]);
+        }
+    }
+}
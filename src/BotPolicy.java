@@ -0,0 +1,25 @@
+/**
+ * A BotPolicy decides which action a computer-controlled hunter takes next.<p>
+ * Policies are shared between the simulation threads, so they should not keep any state of their own.
+ */
+
+public interface BotPolicy {
+
+    /**
+     * Picks the next action for the hunter in the given game.
+     *
+     * @param state The game being played. Policies should only look at it, never change it.
+     * @return The action to take.
+     */
+    Action chooseAction(GameState state);
+
+    /**
+     * Suggests the next move to a player, in words.
+     *
+     * @param state The game being played. Policies should only look at it, never change it.
+     * @return What the policy would do, for example "dig for gold".
+     */
+    default String hint(GameState state) {
+        return chooseAction(state).describe();
+    }
+}
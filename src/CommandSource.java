@@ -0,0 +1,24 @@
+/**
+ * A CommandSource is where the player's commands come from: the keyboard, a network connection,
+ * a script file or a queue filled by another part of the program.<p>
+ * Each line is one answer or one whole command. The shop questions can be answered on the same line as
+ * the menu letter, so "b water y" buys water without waiting for the two follow-up prompts.
+ */
+
+public interface CommandSource {
+
+    /**
+     * Checks whether another line is coming. May wait until one arrives.
+     *
+     * @return false once the source has run out.
+     */
+    boolean hasNext();
+
+    /**
+     * Waits for and returns the next line.
+     *
+     * @return The next line, without its line ending.
+     * @throws java.util.NoSuchElementException if the source has run out.
+     */
+    String nextLine();
+}
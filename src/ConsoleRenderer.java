@@ -0,0 +1,45 @@
+import java.io.PrintStream;
+
+/**
+ * A Renderer that writes to a terminal (or a network connection), using the ANSI codes in the Colors class for color.
+ * Text is only pushed out when the game flushes before waiting for input.
+ * Black is the window's normal text color, so here it is printed in the terminal's own color instead
+ * (black text would vanish on a dark terminal).
+ */
+
+public class ConsoleRenderer implements Renderer {
+    private static final String CLEAR_SCREEN = "\033[H\033[2J";
+
+    // instance variables
+    private final PrintStream out;
+
+    public ConsoleRenderer() {
+        this(System.out);
+    }
+
+    /**
+     * @param out Where to write the text.
+     */
+    public ConsoleRenderer(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void print(String text, TextColor color) {
+        if (color == TextColor.BLACK) {
+            out.print(text);
+        } else {
+            out.print(color.getAnsiCode() + text + Colors.RESET);
+        }
+    }
+
+    @Override
+    public void clear() {
+        out.print(CLEAR_SCREEN);
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * The Difficulty enum holds the settings for each of the game modes the player can pick at the start of the game.
+ * The shop markdown, town toughness and starting gold used to be worked out inline in the TreasureHunter class.
+ * Each mode builds a standard DifficultyProfile from them, which holds the rest of the game's numbers too.
+ */
+
+public enum Difficulty {
+    EASY(1, 0.2, 40, true, false),
+    NORMAL(0.5, 0.4, 20, false, false),
+    HARD(0.25, 0.75, 20, false, false),
+    SAMURAI(0.5, 0.4, 20, false, true),
+    TEST(0.5, 0.4, 106, false, false);
+
+    private final boolean easyMode;
+    private final boolean samuraiMode;
+    private final DifficultyProfile profile;
+
+    Difficulty(double markdown, double toughness, int startingGold, boolean easyMode, boolean samuraiMode) {
+        this.easyMode = easyMode;
+        this.samuraiMode = samuraiMode;
+        profile = DifficultyProfile.standard(this, markdown, toughness, startingGold, easyMode);
+    }
+
+    // accessors
+    public DifficultyProfile getProfile() {
+        return profile;
+    }
+
+    public double getMarkdown() {
+        return profile.getMarkdown();
+    }
+
+    public double getToughness() {
+        return profile.getToughness();
+    }
+
+    public int getStartingGold() {
+        return profile.getStartingGold();
+    }
+
+    public boolean isEasyMode() {
+        return easyMode;
+    }
+
+    public boolean isSamuraiMode() {
+        return samuraiMode;
+    }
+
+    /**
+     * Maps the answer to the "Hard(h), Normal(n), Easy(e)" prompt to a difficulty.
+     * Anything that isn't recognized plays on normal.
+     *
+     * @param choice The player's answer, already in lower case.
+     * @return The matching Difficulty.
+     */
+    public static Difficulty fromMenuChoice(String choice) {
+        if (choice.equals("h")) {
+            return HARD;
+        } else if (choice.equals("test")) {
+            return TEST;
+        } else if (choice.equals("e")) {
+            return EASY;
+        } else if (choice.equals("s")) {
+            return SAMURAI;
+        } else {
+            return NORMAL;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import java.util.Arrays;
+
+/**
+ * A DifficultyProfile holds every number that decides how hard the game is: starting gold, shop prices,
+ * how tough towns are, how often fights happen and items break, and what searching and digging turn up.<p>
+ * Each game mode has a standard profile (Difficulty.getProfile()) with the values the game has always used.
+ * A profile can be copied with any Setting changed, which is how BalanceSweep tries out new rules. Profiles
+ * never change once made, and two profiles with the same mode and values are equal, so they can be used as
+ * keys for caching results.
+ */
+
+public class DifficultyProfile {
+
+    /**
+     * The numbers a profile holds. Each has the value the game was written with, the range it can be
+     * set to, and how finely it can be set (1 for whole numbers, 100 for chances given to 0.01).
+     */
+    public enum Setting {
+        STARTING_GOLD(20, 0, 200, 1),
+        MARKDOWN(0.5, 0, 1, 100),               // part of the price the shop pays back
+        TOUGHNESS(0.4, 0, 1, 100),              // chance of a town being a tough one
+        TOUGH_TROUBLE_CHANCE(0.66, 0, 1, 100),  // chance of finding a fight in a tough town, and of losing it
+        SLEEPY_TROUBLE_CHANCE(0.33, 0, 1, 100), // the same in any other town
+        BRAWL_GOLD(10, 1, 50, 1),               // most gold won or lost in a brawl
+        BREAK_CHANCE(0.5, 0, 1, 100),           // chance of an item breaking when it is used to leave town
+        DIG_CHANCE(0.5, 0, 1, 100),             // chance of digging up gold
+        DIG_GOLD(20, 0, 100, 1),                // most gold dug up at once
+        DUST_CHANCE(0.5, 0, 1, 100),            // chances of what searching turns up; the rest is a gem
+        CROWN_CHANCE(1.0 / 6, 0, 1, 100),
+        TROPHY_CHANCE(1.0 / 6, 0, 1, 100),
+        WATER_PRICE(2, 0, 200, 1),
+        ROPE_PRICE(4, 0, 200, 1),
+        MACHETE_PRICE(6, 0, 200, 1),
+        HORSE_PRICE(12, 0, 200, 1),
+        BOAT_PRICE(20, 0, 200, 1),
+        BOOTS_PRICE(50, 0, 200, 1),
+        SHOVEL_PRICE(8, 0, 200, 1),
+        SWORD_PRICE(0, 0, 200, 1);              // 0 means only a samurai can have one
+
+        private static final Setting[] VALUES = values();
+
+        private final double standard;
+        private final double min;
+        private final double max;
+        private final int scale;
+
+        Setting(double standard, double min, double max, int scale) {
+            this.standard = standard;
+            this.min = min;
+            this.max = max;
+            this.scale = scale;
+        }
+
+        public double getStandard() {
+            return standard;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * @param value Any value.
+         * @return The nearest value this setting can take.
+         */
+        public double snap(double value) {
+            value = Math.max(min, Math.min(max, value));
+            return Math.round(value * scale) / (double) scale;
+        }
+
+        /**
+         * @param item An item.
+         * @return The setting for the item's price.
+         */
+        public static Setting priceOf(Item item) {
+            return VALUES[WATER_PRICE.ordinal() + item.ordinal()];
+        }
+    }
+
+    // instance variables
+    private final Difficulty difficulty;
+    private final double[] values; // indexed by Setting ordinal
+    private final PriceTable prices;
+    private final int startingGold;
+    private final double toughness;
+    private final double toughTroubleChance;
+    private final double sleepyTroubleChance;
+    private final int brawlGold;
+    private final double breakChance;
+    private final double digChance;
+    private final int digGold;
+    private final double[] findThresholds;
+
+    private DifficultyProfile(Difficulty difficulty, double[] values) {
+        this.difficulty = difficulty;
+        this.values = values;
+        startingGold = (int) get(Setting.STARTING_GOLD);
+        toughness = get(Setting.TOUGHNESS);
+        toughTroubleChance = get(Setting.TOUGH_TROUBLE_CHANCE);
+        sleepyTroubleChance = get(Setting.SLEEPY_TROUBLE_CHANCE);
+        brawlGold = (int) get(Setting.BRAWL_GOLD);
+        breakChance = get(Setting.BREAK_CHANCE);
+        digChance = get(Setting.DIG_CHANCE);
+        digGold = (int) get(Setting.DIG_GOLD);
+        // a search turns up dust above the first threshold, a crown above the second, a trophy above the third
+        double dust = 1 - get(Setting.DUST_CHANCE);
+        findThresholds = new double[] {dust, dust - get(Setting.CROWN_CHANCE),
+                dust - (get(Setting.CROWN_CHANCE) + get(Setting.TROPHY_CHANCE))};
+        if (findThresholds[2] < 0) {
+            throw new IllegalArgumentException("Search chances add up to more than 1 in " + this);
+        }
+
+        int[] itemPrices = new int[Item.values().length];
+        boolean standardPrices = true;
+        for (Item item : Item.values()) {
+            Setting price = Setting.priceOf(item);
+            itemPrices[item.ordinal()] = (int) get(price);
+            standardPrices &= get(price) == price.getStandard();
+        }
+        double markdown = get(Setting.MARKDOWN);
+        prices = standardPrices ? PriceTable.forMarkdown(markdown) : new PriceTable(itemPrices, markdown);
+    }
+
+    /**
+     * Makes the standard profile for a mode: every Setting at its standard value apart from the ones given.
+     * Difficulty uses this to build the profile of each mode.
+     *
+     * @param difficulty The mode.
+     * @param markdown The mode's markdown.
+     * @param toughness The mode's chance of a tough town.
+     * @param startingGold The gold the hunter starts with.
+     * @param easyMode true if items never break.
+     * @return The profile.
+     */
+    static DifficultyProfile standard(Difficulty difficulty, double markdown, double toughness, int startingGold,
+                                      boolean easyMode) {
+        double[] values = new double[Setting.VALUES.length];
+        for (Setting setting : Setting.VALUES) {
+            values[setting.ordinal()] = setting.getStandard();
+        }
+        values[Setting.MARKDOWN.ordinal()] = markdown;
+        values[Setting.TOUGHNESS.ordinal()] = toughness;
+        values[Setting.STARTING_GOLD.ordinal()] = startingGold;
+        if (easyMode) {
+            values[Setting.BREAK_CHANCE.ordinal()] = 0;
+        }
+        return new DifficultyProfile(difficulty, values);
+    }
+
+    /**
+     * @param setting The setting to change.
+     * @param value The new value, which is clamped to the setting's range and rounded to its step.
+     * @return A copy of this profile with one setting changed.
+     */
+    public DifficultyProfile with(Setting setting, double value) {
+        double[] changed = values.clone();
+        changed[setting.ordinal()] = setting.snap(value);
+        return new DifficultyProfile(difficulty, changed);
+    }
+
+    /**
+     * @param settings The settings to change.
+     * @param newValues Their new values, in the same order.
+     * @return A copy of this profile with several settings changed.
+     */
+    public DifficultyProfile with(Setting[] settings, double[] newValues) {
+        double[] changed = values.clone();
+        for (int i = 0; i < settings.length; i++) {
+            changed[settings[i].ordinal()] = settings[i].snap(newValues[i]);
+        }
+        return new DifficultyProfile(difficulty, changed);
+    }
+
+    public double get(Setting setting) {
+        return values[setting.ordinal()];
+    }
+
+    // accessors
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    public PriceTable getPrices() {
+        return prices;
+    }
+
+    public double getMarkdown() {
+        return get(Setting.MARKDOWN);
+    }
+
+    public int getStartingGold() {
+        return startingGold;
+    }
+
+    public double getToughness() {
+        return toughness;
+    }
+
+    /**
+     * @param toughTown Whether the town is a tough one.
+     * @return The chance of finding a fight in the town, which is also the chance of losing it.
+     */
+    public double getTroubleChance(boolean toughTown) {
+        return toughTown ? toughTroubleChance : sleepyTroubleChance;
+    }
+
+    public int getBrawlGold() {
+        return brawlGold;
+    }
+
+    public double getBreakChance() {
+        return breakChance;
+    }
+
+    public double getDigChance() {
+        return digChance;
+    }
+
+    public int getDigGold() {
+        return digGold;
+    }
+
+    /**
+     * @param find What searching can turn up: 0 for dust, then crown, trophy and gem.
+     * @return The chance of a town holding it.
+     */
+    public double getFindChance(int find) {
+        double above = find == 0 ? 1 : findThresholds[find - 1];
+        double below = find == findThresholds.length ? 0 : findThresholds[find];
+        return above - below;
+    }
+
+    /**
+     * @param roll A random number from 0 to 1.
+     * @return What a town with that roll holds: 0 for dust, then crown, trophy and gem.
+     */
+    public int findFor(double roll) {
+        for (int i = 0; i < findThresholds.length; i++) {
+            if (roll > findThresholds[i]) {
+                return i;
+            }
+        }
+        return findThresholds.length;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof DifficultyProfile)) {
+            return false;
+        }
+        DifficultyProfile profile = (DifficultyProfile) other;
+        return difficulty == profile.difficulty && Arrays.equals(values, profile.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * difficulty.ordinal() + Arrays.hashCode(values);
+    }
+
+    /**
+     * @return The mode, then every setting that differs from the mode's standard profile.
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder(difficulty.name());
+        DifficultyProfile standard = difficulty.getProfile();
+        for (Setting setting : Setting.VALUES) {
+            double value = get(setting);
+            if (standard == null || value != standard.get(setting)) {
+                str.append(' ').append(setting.name().toLowerCase()).append('=');
+                if (value == Math.rint(value)) {
+                    str.append((long) value);
+                } else {
+                    str.append(String.format("%.2f", value));
+                }
+            }
+        }
+        return str.toString();
+    }
+}
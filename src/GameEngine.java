@@ -0,0 +1,91 @@
+/**
+ * The GameEngine class carries out the player's actions on a GameState.<p>
+ * It never reads input or writes to a window -- every result comes back as an Outcome,
+ * so a whole game can be played without a screen attached.
+ */
+
+public class GameEngine {
+    // most actions leave their news in the town and the game carries on, so they can all share one Outcome
+    private static final Outcome NOTHING_TO_SAY = new Outcome(0, "", Outcome.Status.PLAYING);
+
+    /**
+     * Carries out one action and reports what happened.
+     *
+     * @param state The game being played.
+     * @param action The action the player chose.
+     * @return The text to show the player and the state of the game afterwards.
+     */
+    public Outcome step(GameState state, Action action) {
+        Hunter hunter = state.getHunter();
+        Town town = state.getTown();
+        long news = 0;
+
+        switch (action.getType()) {
+            case BUY:
+                news = town.enterShop(true, action.getItem(), action.isConfirmed());
+                break;
+            case SELL:
+                news = town.enterShop(false, action.getItem(), action.isConfirmed());
+                break;
+            case EXPLORE:
+                news = GameEvent.news(GameEvent.TERRAIN_INFO.event(town.getTerrainIndex()));
+                break;
+            case MOVE:
+                if (town.leaveTown()) {
+                    // This town is going away so hand back its news ahead of time.
+                    news = town.getNews();
+                    state.enterTown();
+                }
+                break;
+            case BRAWL:
+                town.lookForTrouble();
+                break;
+            case HUNT:
+                town.searchTown();
+                break;
+            case DIG:
+                if (hunter.hasItem(Item.SHOVEL) && !town.getTownDug()) {
+                    RandomSource random = state.getRandom();
+                    DifficultyProfile profile = state.getProfile();
+                    if (random.nextDouble() > 1 - profile.getDigChance()) {
+                        int goldDigged = random.nextInt(profile.getDigGold() + 1);
+                        news = GameEvent.news(GameEvent.DUG_GOLD.event(goldDigged));
+                        hunter.changeGold(goldDigged);
+                        GameMetrics.INSTANCE.recordDig(goldDigged);
+                    } else {
+                        news = GameEvent.news(GameEvent.DUG_DIRT.event());
+                    }
+                    town.setTownDug();
+                } else if (town.getTownDug()) {
+                    news = GameEvent.news(GameEvent.ALREADY_DUG.event());
+                } else {
+                    news = GameEvent.news(GameEvent.NO_SHOVEL.event());
+                }
+                break;
+            case QUIT:
+                return new Outcome(GameEvent.news(GameEvent.FAREWELL.event()), hunter.getHunterName(), Outcome.Status.QUIT);
+        }
+        Outcome.Status status = status(state);
+        if (news == 0 && status == Outcome.Status.PLAYING) {
+            return NOTHING_TO_SAY;
+        }
+        return new Outcome(news, hunter.getHunterName(), status);
+    }
+
+    /**
+     * Works out whether the game has been won or lost.
+     *
+     * @param state The game being played.
+     * @return WON once all three treasures are found, LOST if the hunter went bankrupt, otherwise PLAYING.
+     */
+    public Outcome.Status status(GameState state) {
+        Hunter hunter = state.getHunter();
+        if (hunter.getBankruptcy()) {
+            return Outcome.Status.LOST;
+        }
+        if (hunter.hasAllTreasures()) {
+            return Outcome.Status.WON;
+        }
+        return Outcome.Status.PLAYING;
+    }
+}
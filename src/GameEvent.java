@@ -0,0 +1,224 @@
+/**
+ * The GameEvent enum lists everything the game can tell the player happened.<p>
+ * The game logic doesn't build any text. It records what happened as an event plus one number (the gold won,
+ * the item that broke, the treasure found...), packed into an int by event(). Up to two events fit in a long
+ * (see news()), which is how Town and Outcome carry them. Nothing is allocated until someone actually asks
+ * for the words with render(). Events that don't mention the hunter's name are rendered once and then reused.
+ */
+
+public enum GameEvent {
+    // town
+    WELCOME_ROUGH,
+    WELCOME_SLEEPY,
+    CROSSED,        // argument: item ordinal | terrain index << 4
+    ITEM_BROKE,     // argument: item ordinal
+    CANT_LEAVE,     // argument: item ordinal
+    LEFT_SHOP,
+    NO_TROUBLE,
+    BRAWL_SURRENDERED, // argument: gold
+    BRAWL_WON,      // argument: gold
+    BRAWL_LOST,     // argument: gold
+    WON_A_BRAWL,
+    LOST_A_BRAWL,
+    ALREADY_SEARCHED,
+    FOUND_DUST,
+    FOUND,          // argument: treasure ordinal
+    ALREADY_FOUND,  // argument: treasure ordinal
+    // shop
+    NOT_STOCKED,
+    NOT_WANTED,
+    SWORD_SCARED,
+    BOUGHT,         // argument: item ordinal
+    CANT_BUY,
+    SOLD,
+    CANT_SELL,
+    // engine
+    TERRAIN_INFO,   // argument: terrain index
+    DUG_GOLD,       // argument: gold
+    DUG_DIRT,
+    ALREADY_DUG,
+    NO_SHOVEL,
+    FAREWELL;
+
+    private static final GameEvent[] VALUES = values();
+    private static final int CACHED_ARGUMENTS = 128;
+    private static final String[][] RENDERED = new String[VALUES.length][CACHED_ARGUMENTS];
+
+    /**
+     * Packs this event and its number into an int. 0 never comes back, so it can mean "nothing happened".
+     *
+     * @param argument The event's number, from 0 to 2^24 - 1; 0 if the event has none.
+     * @return The packed event.
+     */
+    public int event(int argument) {
+        return (ordinal() + 1) | (argument << 8);
+    }
+
+    public int event() {
+        return ordinal() + 1;
+    }
+
+    /**
+     * @param event A packed event, not 0.
+     * @return Which event it is.
+     */
+    public static GameEvent typeOf(int event) {
+        return VALUES[(event & 0xFF) - 1];
+    }
+
+    /**
+     * @param event A packed event.
+     * @return The event's number.
+     */
+    public static int argumentOf(int event) {
+        return event >>> 8;
+    }
+
+    /**
+     * @param first The packed event that happened first.
+     * @param second The packed event that followed it, or 0.
+     * @return Both events packed into a long.
+     */
+    public static long news(int first, int second) {
+        return (first & 0xFFFFFFFFL) | ((long) second << 32);
+    }
+
+    public static long news(int only) {
+        return only & 0xFFFFFFFFL;
+    }
+
+    public static int first(long news) {
+        return (int) news;
+    }
+
+    public static int second(long news) {
+        return (int) (news >>> 32);
+    }
+
+    /**
+     * @return true if this is a warning, which the front end shows in red.
+     */
+    public boolean isAlert() {
+        return this == ALREADY_DUG || this == NO_SHOVEL;
+    }
+
+    /**
+     * @param news Up to two packed events.
+     * @return true if either of them is a warning.
+     */
+    public static boolean isAlert(long news) {
+        return (first(news) != 0 && typeOf(first(news)).isAlert()) || (second(news) != 0 && typeOf(second(news)).isAlert());
+    }
+
+    /**
+     * Turns news into the words the player sees.
+     *
+     * @param news Up to two packed events.
+     * @param hunterName The name of the hunter the news is about.
+     * @return The text, or an empty String if nothing happened.
+     */
+    public static String render(long news, String hunterName) {
+        int first = first(news);
+        int second = second(news);
+        if (first == 0) {
+            return "";
+        }
+        if (second == 0) {
+            return render(first, hunterName);
+        }
+        return render(first, hunterName) + render(second, hunterName);
+    }
+
+    /**
+     * @param event One packed event.
+     * @param hunterName The name of the hunter the event is about.
+     * @return The text for the event.
+     */
+    public static String render(int event, String hunterName) {
+        GameEvent type = typeOf(event);
+        int argument = argumentOf(event);
+        if (type.mentionsHunter() || argument >= CACHED_ARGUMENTS) {
+            return type.text(argument, hunterName);
+        }
+        String text = RENDERED[type.ordinal()][argument];
+        if (text == null) {
+            // two threads may both build it; they build the same String so either can win
+            text = type.text(argument, hunterName);
+            RENDERED[type.ordinal()][argument] = text;
+        }
+        return text;
+    }
+
+    private boolean mentionsHunter() {
+        return this == WELCOME_ROUGH || this == WELCOME_SLEEPY || this == CANT_LEAVE || this == FAREWELL;
+    }
+
+    private String text(int argument, String hunterName) {
+        switch (this) {
+            case WELCOME_ROUGH:
+                return "\nWelcome to town, " + hunterName + ".\nIt's pretty rough around here, so watch yourself.";
+            case WELCOME_SLEEPY:
+                return "\nWelcome to town, " + hunterName + ".\nWe're just a sleepy little town with mild mannered folk.";
+            case CROSSED:
+                return "\nYou used your " + Item.fromOrdinal(argument & 0xF).getName() + " to cross the "
+                        + Terrain.get(argument >>> 4).getTerrainName() + ".";
+            case ITEM_BROKE:
+                return "\nUnfortunately, you lost your " + Item.fromOrdinal(argument).getName();
+            case CANT_LEAVE:
+                return "\nYou can't leave town, " + hunterName + ". You don't have a " + Item.fromOrdinal(argument).getName() + ".";
+            case LEFT_SHOP:
+                return "You left the shop";
+            case NO_TROUBLE:
+                return "\nYou couldn't find any trouble";
+            case BRAWL_SURRENDERED:
+                return "\nYou want trouble, stranger! You got it! \nSorry, please forgive me."
+                        + "\nThe brawler, seeing your sword surrendered. They gave you " + argument + " gold.";
+            case BRAWL_WON:
+                return "\nYou want trouble, stranger! You got it! \nOof! Umph! Ow!"
+                        + "\nOkay, stranger! You proved yer mettle. Here, take my gold."
+                        + "\nYou won the brawl and receive " + argument + " gold.";
+            case BRAWL_LOST:
+                return "\nYou want trouble, stranger! You got it! \nOof! Umph! Ow!"
+                        + "\nThat'll teach you to go lookin' fer trouble in MY town! Now pay up!"
+                        + "\nYou lost the brawl and pay " + argument + " gold.";
+            case WON_A_BRAWL:
+                return "\nYou won a brawl.";
+            case LOST_A_BRAWL:
+                return "\nYou lost a brawl.";
+            case ALREADY_SEARCHED:
+                return "\nYou have already searched this town!";
+            case FOUND_DUST:
+                return "\nYou found dust womp womp";
+            case FOUND:
+                return "\nYou found " + Treasure.fromOrdinal(argument).getName() + "!";
+            case ALREADY_FOUND:
+                return "\nYou have already found a " + Treasure.fromOrdinal(argument).getName();
+            case NOT_STOCKED:
+                return "\nWe ain't got none of those.";
+            case NOT_WANTED:
+                return "\nWe don't want none of those.";
+            case SWORD_SCARED:
+                return "\nThe sword's aura scared the shopkeeper and he gives you the item for free.";
+            case BOUGHT:
+                return "\nYe' got yerself a " + Item.fromOrdinal(argument).getName() + ". Come again soon.";
+            case CANT_BUY:
+                return "\nHmm, either you don't have enough gold or you've already got one of those!";
+            case SOLD:
+                return "\nPleasure doin' business with you.";
+            case CANT_SELL:
+                return "\nStop stringin' me along!";
+            case TERRAIN_INFO:
+                return Terrain.get(argument).infoString();
+            case DUG_GOLD:
+                return "\nYou dug up " + argument + " gold";
+            case DUG_DIRT:
+                return "\nYou dug but only found dirt";
+            case ALREADY_DUG:
+                return "\nYou already dug for gold in this town.";
+            case NO_SHOVEL:
+                return "\nYou can't dig for gold without a shovel TRY GOING TO THE SHOP TO BUY THE SHOVEL";
+            default:
+                return "\nFare thee well, " + hunterName + "!";
+        }
+    }
+}
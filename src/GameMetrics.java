@@ -0,0 +1,246 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The GameMetrics class counts what players do and where the gold goes, for every game running in this JVM.<p>
+ * Counters are LongAdders and latencies go into LatencyHistograms, so recording never takes a lock and
+ * threads playing different games don't fight over the same memory. The numbers can be read through JMX
+ * (register()) or printed every so often (startReports()).
+ */
+
+public class GameMetrics implements GameMetricsMXBean {
+    public static final GameMetrics INSTANCE = new GameMetrics();
+    public static final String OBJECT_NAME = "TreasureHunter:type=GameMetrics";
+
+    // instance variables
+    private final LongAdder[] actions = newAdders(Action.Type.values().length);
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Action.Type.values().length];
+    private final LongAdder invalidChoices = new LongAdder();
+    private final LongAdder shopEntries = new LongAdder();
+    private final LongAdder goldWonInBrawls = new LongAdder();
+    private final LongAdder goldLostInBrawls = new LongAdder();
+    private final LongAdder goldDug = new LongAdder();
+    private final LongAdder goldSpentInShops = new LongAdder();
+    private final LongAdder goldFromSales = new LongAdder();
+    private final LongAdder[] itemsBroken = newAdders(Item.values().length);
+    private ScheduledExecutorService reporter;
+
+    private GameMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Records one action carried out for a player.
+     *
+     * @param type The kind of action.
+     * @param nanos How long it took.
+     */
+    public void recordAction(Action.Type type, long nanos) {
+        actions[type.ordinal()].increment();
+        latencies[type.ordinal()].record(nanos);
+    }
+
+    public void recordInvalidChoice() {
+        invalidChoices.increment();
+    }
+
+    /**
+     * Counts a hunter using a town's shop to buy or sell. Town.enterShop() calls this once per visit.
+     */
+    public void recordShopEntry() {
+        shopEntries.increment();
+    }
+
+    /**
+     * @param gold The gold the hunter won (positive) or paid (negative) after a brawl.
+     */
+    public void recordBrawl(int gold) {
+        if (gold > 0) {
+            goldWonInBrawls.add(gold);
+        } else {
+            goldLostInBrawls.add(-gold);
+        }
+    }
+
+    public void recordDig(int gold) {
+        goldDug.add(gold);
+    }
+
+    public void recordPurchase(int gold) {
+        goldSpentInShops.add(gold);
+    }
+
+    public void recordSale(int gold) {
+        goldFromSales.add(gold);
+    }
+
+    public void recordItemBroken(Item item) {
+        itemsBroken[item.ordinal()].increment();
+    }
+
+    /**
+     * Makes the metrics visible to JMX clients under OBJECT_NAME. Registering twice does nothing.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // already there
+        } catch (JMException e) {
+            throw new IllegalStateException("Couldn't register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Prints the report every so often from a background thread, until stopReports() is called.
+     *
+     * @param seconds How often to print.
+     * @param out Where to print.
+     */
+    public synchronized void startReports(long seconds, PrintStream out) {
+        stopReports();
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> out.print(getReport()), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopReports() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    // accessors
+    public Map<String, Long> getActionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Action.Type type : Action.Type.values()) {
+            counts.put(type.name().toLowerCase(), actions[type.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    public Map<String, Double> getMedianLatencyMicros() {
+        return latencyMicros(histogram -> histogram.getPercentile(50));
+    }
+
+    public Map<String, Double> getP99LatencyMicros() {
+        return latencyMicros(histogram -> histogram.getPercentile(99));
+    }
+
+    public Map<String, Double> getMaxLatencyMicros() {
+        return latencyMicros(histogram -> histogram.getMax());
+    }
+
+    private Map<String, Double> latencyMicros(ToDoubleFunction<LatencyHistogram> nanos) {
+        Map<String, Double> micros = new LinkedHashMap<>();
+        for (Action.Type type : Action.Type.values()) {
+            micros.put(type.name().toLowerCase(), nanos.applyAsDouble(latencies[type.ordinal()]) / 1000);
+        }
+        return micros;
+    }
+
+    public long getInvalidChoices() {
+        return invalidChoices.sum();
+    }
+
+    public long getShopEntries() {
+        return shopEntries.sum();
+    }
+
+    public long getGoldWonInBrawls() {
+        return goldWonInBrawls.sum();
+    }
+
+    public long getGoldLostInBrawls() {
+        return goldLostInBrawls.sum();
+    }
+
+    public long getGoldDug() {
+        return goldDug.sum();
+    }
+
+    public long getGoldSpentInShops() {
+        return goldSpentInShops.sum();
+    }
+
+    public long getGoldFromSales() {
+        return goldFromSales.sum();
+    }
+
+    public Map<String, Long> getItemsBroken() {
+        Map<String, Long> broken = new LinkedHashMap<>();
+        for (Item item : Item.values()) {
+            broken.put(item.getName(), itemsBroken[item.ordinal()].sum());
+        }
+        return broken;
+    }
+
+    /**
+     * @return Every metric as a small text table.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder("--- game metrics ---\n");
+        report.append(String.format("%-8s %10s %10s %10s %10s%n", "action", "count", "p50 us", "p99 us", "max us"));
+        for (Action.Type type : Action.Type.values()) {
+            LatencyHistogram histogram = latencies[type.ordinal()];
+            report.append(String.format("%-8s %10d %10.1f %10.1f %10.1f%n", type.name().toLowerCase(),
+                    actions[type.ordinal()].sum(), histogram.getPercentile(50) / 1000.0,
+                    histogram.getPercentile(99) / 1000.0, histogram.getMax() / 1000.0));
+        }
+        report.append("invalid choices: ").append(getInvalidChoices());
+        report.append(", shop entries: ").append(getShopEntries()).append('\n');
+        report.append("gold minted: ").append(getGoldWonInBrawls()).append(" won in brawls, ");
+        report.append(getGoldDug()).append(" dug, ").append(getGoldFromSales()).append(" from sales\n");
+        report.append("gold sunk: ").append(getGoldSpentInShops()).append(" spent in shops, ");
+        report.append(getGoldLostInBrawls()).append(" lost in brawls\n");
+        report.append("items broken:");
+        for (Item item : Item.values()) {
+            report.append(' ').append(item.getName()).append('=').append(itemsBroken[item.ordinal()].sum());
+        }
+        return report.append('\n').toString();
+    }
+
+    /**
+     * Sets every counter back to 0. Anything recorded while this runs may or may not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < actions.length; i++) {
+            actions[i].reset();
+            latencies[i].reset();
+        }
+        for (LongAdder adder : itemsBroken) {
+            adder.reset();
+        }
+        invalidChoices.reset();
+        shopEntries.reset();
+        goldWonInBrawls.reset();
+        goldLostInBrawls.reset();
+        goldDug.reset();
+        goldSpentInShops.reset();
+        goldFromSales.reset();
+    }
+}
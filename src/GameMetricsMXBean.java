@@ -0,0 +1,36 @@
+import java.util.Map;
+
+/**
+ * What GameMetrics shows through JMX, for jconsole or any other JMX client.
+ * Maps are keyed by action or item name; times are in microseconds.
+ */
+
+public interface GameMetricsMXBean {
+    Map<String, Long> getActionCounts();
+
+    Map<String, Double> getMedianLatencyMicros();
+
+    Map<String, Double> getP99LatencyMicros();
+
+    Map<String, Double> getMaxLatencyMicros();
+
+    long getInvalidChoices();
+
+    long getShopEntries();
+
+    long getGoldWonInBrawls();
+
+    long getGoldLostInBrawls();
+
+    long getGoldDug();
+
+    long getGoldSpentInShops();
+
+    long getGoldFromSales();
+
+    Map<String, Long> getItemsBroken();
+
+    String getReport();
+
+    void reset();
+}
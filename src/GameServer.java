@@ -0,0 +1,148 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The GameServer lets many players play at once over a plain text connection (telnet or nc will do).<p>
+ * Every connection gets its own TreasureHunter -- its own hunter, towns, shops, input and output --
+ * running on its own virtual thread, so a player sitting at a prompt costs a parked virtual thread and a
+ * few small buffers rather than a whole platform thread. The number of players is capped, and players who
+ * stop typing for too long are disconnected, so memory use stays bounded.<p>
+ * The one thing the players share is the Market: every shop on the server trades in it, so prices in each
+ * region rise and fall with what all the players there are buying and selling. Given a leaderboard file, they
+ * also share a Leaderboard, which every finished game is recorded on.<p>
+ * GameMetrics are registered with JMX and printed every metricsSeconds (0 turns the printing off).<p>
+ *
+ * Usage: java GameServer [port] [maxSessions] [idleTimeoutSeconds] [metricsSeconds] [leaderboardFile]
+ */
+
+public class GameServer {
+    private static final int BUFFER_SIZE = 2048;
+
+    // instance variables
+    private final int port;
+    private final int idleTimeoutMillis;
+    private final Semaphore sessionPermits;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final Market market = new Market();
+    private final Leaderboard leaderboard; // null if games aren't ranked
+
+    /**
+     * @param port The port to listen on.
+     * @param maxSessions The most players connected at once. Anyone else is turned away.
+     * @param idleTimeoutMillis How long a player can leave a prompt unanswered before being disconnected.
+     */
+    public GameServer(int port, int maxSessions, int idleTimeoutMillis) {
+        this(port, maxSessions, idleTimeoutMillis, null);
+    }
+
+    /**
+     * @param port The port to listen on.
+     * @param maxSessions The most players connected at once. Anyone else is turned away.
+     * @param idleTimeoutMillis How long a player can leave a prompt unanswered before being disconnected.
+     * @param leaderboard The board every finished game is recorded on, or null for none.
+     */
+    public GameServer(int port, int maxSessions, int idleTimeoutMillis, Leaderboard leaderboard) {
+        this.port = port;
+        this.leaderboard = leaderboard;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        sessionPermits = new Semaphore(maxSessions);
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public Market getMarket() {
+        return market;
+    }
+
+    /**
+     * Accepts connections until the server is stopped. Each one is handed to a new virtual thread.
+     *
+     * @throws IOException if the port can't be opened.
+     */
+    public void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 1024);
+             ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.println("Treasure Hunter server listening on port " + port);
+            while (true) {
+                Socket socket = server.accept();
+                if (!sessionPermits.tryAcquire()) {
+                    turnAway(socket);
+                    continue;
+                }
+                sessions.submit(() -> runSession(socket));
+            }
+        }
+    }
+
+    /**
+     * Plays one game with the player on the other end of the socket.
+     */
+    private void runSession(Socket socket) {
+        activeSessions.incrementAndGet();
+        try (socket) {
+            socket.setSoTimeout(idleTimeoutMillis);
+            socket.setTcpNoDelay(true);
+            PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE),
+                    false, StandardCharsets.UTF_8);
+            CommandSource in = new ReaderCommandSource(socket.getInputStream(), BUFFER_SIZE);
+            TreasureHunter game = new TreasureHunter(new ConsoleRenderer(out), in);
+            game.tradeAt(market);
+            if (leaderboard != null) {
+                game.recordScoresIn(leaderboard);
+            }
+            game.play();
+            out.println();
+            out.flush();
+        } catch (UncheckedIOException e) {
+            reportError(e.getCause());
+        } catch (IOException e) {
+            reportError(e);
+        } finally {
+            activeSessions.decrementAndGet();
+            sessionPermits.release();
+        }
+    }
+
+    /**
+     * A player going quiet for too long is normal; anything else is worth a line in the log.
+     */
+    private static void reportError(IOException e) {
+        if (!(e instanceof SocketTimeoutException)) {
+            System.err.println("Session ended with an error: " + e.getMessage());
+        }
+    }
+
+    private static void turnAway(Socket socket) {
+        try (socket) {
+            socket.getOutputStream().write("The server is full, try again later.\r\n".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // they were leaving anyway
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int idleSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 600;
+        int metricsSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 60;
+        GameMetrics.INSTANCE.register();
+        if (metricsSeconds > 0) {
+            GameMetrics.INSTANCE.startReports(metricsSeconds, System.out);
+        }
+        Leaderboard leaderboard = args.length > 4 ? new Leaderboard(Path.of(args[4])) : null;
+        new GameServer(port, maxSessions, idleSeconds * 1000, leaderboard).serve();
+    }
+}
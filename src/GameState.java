@@ -0,0 +1,215 @@
+import java.util.function.BiFunction;
+
+/**
+ * The GameState class holds everything that makes up one game in progress:
+ * the hunter, the town they are in (and its shop) and the difficulty being played.<p>
+ * A game can be set to trade in a shared Market, in which case every shop it builds uses the market's prices.<p>
+ * It does no input or output, so any number of games can be kept around at once.
+ */
+
+public class GameState {
+    // instance variables
+    private final Hunter hunter;
+    private final DifficultyProfile profile;
+    private final long seed;
+    private final SplittableRandomSource random;
+    private Town currentTown;
+    private Shop shop;
+    private World world; // null unless the game is played on a World map
+    private int townId;
+    private Market market; // null for fixed prices
+
+    /**
+     * Creates a new hunter for the given difficulty and places them in their first town, using a fresh seed.
+     *
+     * @param hunterName The hunter's name.
+     * @param difficulty The difficulty being played.
+     */
+    public GameState(String hunterName, Difficulty difficulty) {
+        this(hunterName, difficulty, SplittableRandomSource.randomSeed());
+    }
+
+    /**
+     * Creates a new hunter for the given difficulty and places them in their first town.
+     * Two games created with the same seed and given the same actions play out exactly the same.
+     *
+     * @param hunterName The hunter's name.
+     * @param difficulty The difficulty being played.
+     * @param seed The seed for the game's random numbers.
+     */
+    public GameState(String hunterName, Difficulty difficulty, long seed) {
+        this(hunterName, difficulty.getProfile(), seed);
+    }
+
+    /**
+     * Creates a new game played with the numbers in the given profile instead of its mode's standard ones.
+     *
+     * @param hunterName The hunter's name.
+     * @param profile The numbers for the difficulty being played.
+     * @param seed The seed for the game's random numbers.
+     */
+    public GameState(String hunterName, DifficultyProfile profile, long seed) {
+        this.profile = profile;
+        this.seed = seed;
+        random = new SplittableRandomSource(seed);
+        hunter = newHunter(hunterName, profile);
+        newTown();
+    }
+
+    /**
+     * Creates a new game played on a World map of the given size instead of a new town on every move.
+     * The world is built from the game's seed, so the same seed gives the same map.
+     *
+     * @param hunterName The hunter's name.
+     * @param difficulty The difficulty being played.
+     * @param seed The seed for the game's random numbers and the map.
+     * @param worldTowns How many towns the world has.
+     * @param cacheSize How many towns to keep built at once.
+     */
+    public GameState(String hunterName, Difficulty difficulty, long seed, int worldTowns, int cacheSize) {
+        profile = difficulty.getProfile();
+        this.seed = seed;
+        random = new SplittableRandomSource(seed);
+        hunter = newHunter(hunterName, profile);
+        world = new World(SplittableRandomSource.seedFor(seed, -1), worldTowns, profile, random, cacheSize);
+        townId = 0;
+        currentTown = world.town(townId);
+        currentTown.hunterArrives(hunter);
+    }
+
+    /**
+     * Rebuilds a saved game. The town is made by the caller from the saved values, using the shop and
+     * random numbers this constructor sets up, so it is passed in as a function.
+     *
+     * @param hunter The rebuilt hunter.
+     * @param difficulty The difficulty being played.
+     * @param seed The seed the game was started with.
+     * @param randomState Where the game's random numbers had got to.
+     * @param townBuilder Makes the current town from the new shop and random source.
+     */
+    public GameState(Hunter hunter, Difficulty difficulty, long seed, long randomState,
+                     BiFunction<Shop, RandomSource, Town> townBuilder) {
+        this.hunter = hunter;
+        profile = difficulty.getProfile();
+        this.seed = seed;
+        random = new SplittableRandomSource(seed);
+        random.setState(randomState);
+        shop = new Shop(profile.getPrices());
+        currentTown = townBuilder.apply(shop, random);
+        currentTown.hunterArrives(hunter);
+    }
+
+    private static Hunter newHunter(String hunterName, DifficultyProfile profile) {
+        Difficulty difficulty = profile.getDifficulty();
+        Hunter hunter = new Hunter(hunterName, profile.getStartingGold(), difficulty.isSamuraiMode());
+        if (difficulty == Difficulty.TEST) {
+            // the test mode starts out with everything needed to cross any terrain
+            hunter.buyItem("water", 1);
+            hunter.buyItem("rope", 1);
+            hunter.buyItem("machete", 1);
+            hunter.buyItem("horse", 1);
+            hunter.buyItem("boat", 1);
+            hunter.buyItem("boots", 1);
+        }
+        return hunter;
+    }
+
+    /**
+     * Creates a new town and adds the Hunter to it.
+     * On a World map, the hunter goes to one of the neighbouring towns instead.
+     */
+    public void enterTown() {
+        if (world != null) {
+            townId = world.travelFrom(townId);
+            currentTown = world.town(townId);
+            currentTown.hunterArrives(hunter);
+            return;
+        }
+        newTown();
+    }
+
+    /**
+     * Builds a brand new town with its own shop. Private, as the constructor uses it too and a subclass
+     * overriding enterTown() would see a half-built game.
+     */
+    private void newTown() {
+        shop = new Shop(profile.getPrices());
+        if (market != null) {
+            shop.tradeAt(market);
+        }
+        currentTown = new Town(shop, profile, random);
+
+        // calling the hunterArrives method, which takes the Hunter
+        // as a parameter; note this also could have been done in the
+        // constructor for Town, but this illustrates another way to associate
+        // an object with an object of a different class
+        currentTown.hunterArrives(hunter);
+    }
+
+    /**
+     * Makes the game trade in a shared Market: the current shop and every shop built after it use its prices.
+     *
+     * @param market The market to trade in.
+     */
+    public void tradeAt(Market market) {
+        this.market = market;
+        getShop().tradeAt(market);
+    }
+
+    // accessors
+    public Hunter getHunter() {
+        return hunter;
+    }
+
+    public Town getTown() {
+        return currentTown;
+    }
+
+    public Shop getShop() {
+        return world != null ? world.getShop() : shop;
+    }
+
+    /**
+     * @return The World map, or null if every move makes a new town.
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * @return The number of the current town on the World map (always 0 without one).
+     */
+    public int getTownId() {
+        return townId;
+    }
+
+    public Difficulty getDifficulty() {
+        return profile.getDifficulty();
+    }
+
+    public DifficultyProfile getProfile() {
+        return profile;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The shared Market the game trades in, or null if its prices are fixed.
+     */
+    public Market getMarket() {
+        return market;
+    }
+
+    public RandomSource getRandom() {
+        return random;
+    }
+
+    /**
+     * @return Where the game's random numbers have got to, for saving.
+     */
+    public long getRandomState() {
+        return random.getState();
+    }
+}
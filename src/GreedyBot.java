@@ -0,0 +1,87 @@
+/**
+ * The GreedyBot is a simple BotPolicy that plays the way most new players do:
+ * search each town, dig if it can, buy whatever it needs to leave and move on,
+ * and look for trouble when it runs short of gold.
+ */
+
+public class GreedyBot implements BotPolicy {
+    private static final int HUNT = Action.hunt().encode();
+    private static final int DIG = Action.dig().encode();
+    private static final int MOVE = Action.move().encode();
+    private static final int BRAWL = Action.brawl().encode();
+    private static final int BUY_SHOVEL = Action.buy("shovel", true).encode();
+    private static final int BUY_SWORD = Action.buy("sword", true).encode();
+    private static final int[] BUY_CROSSING = new int[Terrain.count()];
+
+    static {
+        for (int i = 0; i < BUY_CROSSING.length; i++) {
+            BUY_CROSSING[i] = Action.buy(Terrain.get(i).getNeededItem(), true).encode();
+        }
+    }
+
+    @Override
+    public Action chooseAction(GameState state) {
+        Hunter hunter = state.getHunter();
+        Town town = state.getTown();
+        Shop shop = state.getShop();
+        boolean samurai = hunter.getHunterSamuraiMode();
+        int region = town.getTerrainIndex();
+
+        if (!town.getSearched()) {
+            return Action.hunt();
+        }
+        if (hunter.hasItemInKit("shovel") && !town.getTownDug()) {
+            return Action.dig();
+        }
+        if (samurai && !hunter.hasItemInKit("sword")) {
+            return Action.buy("sword", true);
+        }
+
+        Terrain terrain = town.getTerrain();
+        if (terrain.canCrossTerrain(hunter)) {
+            return Action.move();
+        }
+        int neededCost = shop.quote(terrain.getRequiredItem(), samurai, region);
+        if (hunter.getGold() >= neededCost) {
+            int shovelCost = shop.quote(Item.SHOVEL, samurai, region);
+            if (!hunter.hasItemInKit("shovel") && hunter.getGold() >= neededCost + shovelCost) {
+                return Action.buy("shovel", true);
+            }
+            return Action.buy(terrain.getNeededItem(), true);
+        }
+        return Action.brawl();
+    }
+
+    /**
+     * Makes the same choice as chooseAction() for a game packed into a PackedState, so a search or a benchmark
+     * can play GreedyBot's strategy without building any objects.
+     *
+     * @param rules The PackedState the game is played with.
+     * @param state The packed state.
+     * @return The action, packed by Action.encode().
+     */
+    public static int choose(PackedState rules, long state) {
+        if (!PackedState.isSearched(state)) {
+            return HUNT;
+        }
+        if (PackedState.hasItem(state, Item.SHOVEL) && !PackedState.isDug(state)) {
+            return DIG;
+        }
+        if (rules.getProfile().getDifficulty().isSamuraiMode() && !PackedState.hasItem(state, Item.SWORD)) {
+            return BUY_SWORD;
+        }
+        if (PackedState.canCross(state)) {
+            return MOVE;
+        }
+        Terrain terrain = PackedState.terrain(state);
+        int neededCost = rules.buyPrice(terrain.getRequiredItem());
+        int gold = PackedState.gold(state);
+        if (gold >= neededCost) {
+            if (!PackedState.hasItem(state, Item.SHOVEL) && gold >= neededCost + rules.buyPrice(Item.SHOVEL)) {
+                return BUY_SHOVEL;
+            }
+            return BUY_CROSSING[terrain.getIndex()];
+        }
+        return BRAWL;
+    }
+}
@@ -1,15 +1,21 @@
 /**
  * Hunter Class<br /><br />
- * This class represents the treasure hunter character (the player) in the Treasure Hunt game.
+ * This class represents the treasure hunter character (the player) in the Treasure Hunt game.<br />
+ * The kit and the treasures are stored as bitmasks (one bit per Item or Treasure), so checking,
+ * adding and removing are single bitwise operations. The methods that take Strings are there for
+ * the menus; they look the name up once and then use the enum versions.
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
 public class Hunter {
+    // the printable kit and treasure lists, built the first time each mask is printed
+    private static final String[] INVENTORY_TEXT = new String[1 << Item.values().length];
+    private static final String[] TREASURE_TEXT = new String[1 << Treasure.values().length];
+
     //instance variables
-    private OutputWindow window;
     private String hunterName;
-    private String[] kit;
-    private String[] treasures;
+    private int kit;
+    private int treasures;
     private int gold;
     private boolean bankrupt = false;
     private boolean SamuraiMode;
@@ -21,22 +27,29 @@ public class Hunter {
      */
 
 
-    public Hunter(String hunterName, int startingGold, boolean SamuraiMode,OutputWindow window) {
+    public Hunter(String hunterName, int startingGold, boolean SamuraiMode) {
         this.hunterName = hunterName;
         this.SamuraiMode = SamuraiMode;
-        if (SamuraiMode) {
-            kit = new String[8]; // only 5 possible items can be stored in kit
-        } else {
-            kit = new String[7]; // only 5 possible items can be stored in kit
-        }
-
-        treasures = new String[3];
+        kit = 0;
+        treasures = 0;
         gold = startingGold;
-        this.window = window;
     }
 
-    public OutputWindow GetWindow() {
-        return window;
+    /**
+     * Rebuilds a hunter exactly as they were, for loading a saved game.
+     *
+     * @param hunterName The hunter's name.
+     * @param gold The gold the hunter had.
+     * @param SamuraiMode Whether the hunter is a samurai.
+     * @param kitMask The value getKitMask() returned when the hunter was saved.
+     * @param treasureMask The value getTreasureMask() returned when the hunter was saved.
+     * @param bankrupt Whether the hunter had gone bankrupt.
+     */
+    public Hunter(String hunterName, int gold, boolean SamuraiMode, int kitMask, int treasureMask, boolean bankrupt) {
+        this(hunterName, gold, SamuraiMode);
+        kit = kitMask;
+        treasures = treasureMask;
+        this.bankrupt = bankrupt;
     }
 
     //Accessors
@@ -47,6 +60,20 @@ public class Hunter {
         return SamuraiMode;
     }
 
+    /**
+     * @return The kit as a bitmask of Item bits.
+     */
+    public int getKitMask() {
+        return kit;
+    }
+
+    /**
+     * @return The treasures found as a bitmask of Treasure bits.
+     */
+    public int getTreasureMask() {
+        return treasures;
+    }
+
     /**
      * Updates the amount of gold the hunter has.
      *
@@ -62,6 +89,10 @@ public class Hunter {
         return bankrupt;
     }
 
+    public int getGold() {
+        return gold;
+    }
+
     /**
      * Buys an item from a shop.
      *
@@ -70,10 +101,15 @@ public class Hunter {
      * @return true if the item is successfully bought.
      */
     public boolean buyItem(String item, int costOfItem) {
-        if ((costOfItem == 0 && !item.equals("sword")) || gold < costOfItem || hasItemInKit(item)) {
+        Item parsed = Item.fromName(item);
+        return parsed != null && buyItem(parsed, costOfItem);
+    }
+
+    public boolean buyItem(Item item, int costOfItem) {
+        if ((costOfItem == 0 && item != Item.SWORD) || gold < costOfItem || hasItem(item)) {
             return false;
         }
-        if (getHunterSamuraiMode() && hasItemInKit("sword")) {
+        if (getHunterSamuraiMode() && hasItem(Item.SWORD)) {
             addItem(item);
         } else {
             gold -= costOfItem;
@@ -91,48 +127,63 @@ public class Hunter {
      * @return true if the item was successfully sold.
      */
     public boolean sellItem(String item, int buyBackPrice) {
-        if (buyBackPrice <= 0 || !hasItemInKit(item)) {
+        Item parsed = Item.fromName(item);
+        return parsed != null && sellItem(parsed, buyBackPrice);
+    }
+
+    public boolean sellItem(Item item, int buyBackPrice) {
+        if (buyBackPrice <= 0 || !hasItem(item)) {
             return false;
         }
         gold += buyBackPrice;
-        removeItemFromKit(item);
+        removeItem(item);
         return true;
     }
 
     /**
-     * Removes an item from the kit by setting the index of the item to null.
+     * Removes an item from the kit by clearing its bit.
      *
      * @param item The item to be removed.
      */
     public void removeItemFromKit(String item) {
-        int itmIdx = findItemInKit(item);
-
-        // if item is found
-        if (itmIdx >= 0) {
-            kit[itmIdx] = null;
+        Item parsed = Item.fromName(item);
+        if (parsed != null) {
+            removeItem(parsed);
         }
     }
 
+    public void removeItem(Item item) {
+        kit &= ~item.bit();
+    }
+
     /**
      * Checks to make sure that the item is not already in the kit.
-     * If not, it assigns the item to an index in the kit with a null value ("empty" position).
+     * If not, it sets the item's bit in the kit.
      *
      * @param item The item to be added to the kit.
      * @return true if the item is not in the kit and has been added.
      */
     public boolean addItem(String item) {
-        if (!hasItemInKit(item)) {
-            int idx = emptyPositionInKit();
-            kit[idx] = item;
+        Item parsed = Item.fromName(item);
+        return parsed != null && addItem(parsed);
+    }
+
+    public boolean addItem(Item item) {
+        if (!hasItem(item)) {
+            kit |= item.bit();
             return true;
         }
         return false;
     }
 
     public boolean addTreasure(String treasure) {
-        if (!hasTreasureInTreasures(treasure)) {
-            int idx = emptyPositionInTreasures();
-            treasures[idx] = treasure;
+        Treasure parsed = Treasure.fromName(treasure);
+        return parsed != null && addTreasure(parsed);
+    }
+
+    public boolean addTreasure(Treasure treasure) {
+        if (!hasTreasure(treasure)) {
+            treasures |= treasure.bit();
             return true;
         }
         return false;
@@ -140,27 +191,34 @@ public class Hunter {
 
 
     /**
-     * Checks if the kit Array has the specified item.
+     * Checks if the kit has the specified item.
      *
      * @param item The search item
      * @return true if the item is found.
      */
     public boolean hasItemInKit(String item) {
-        for (String tmpItem : kit) {
-            if (item.equals(tmpItem)) {
-                // early return
-                return true;
-            }
-        }
-        return false;
+        Item parsed = Item.fromName(item);
+        return parsed != null && hasItem(parsed);
     }
+
+    public boolean hasItem(Item item) {
+        return (kit & item.bit()) != 0;
+    }
+
     public boolean hasTreasureInTreasures(String treasure) {
-        for (String tmpTreasure: treasures) {
-            if (treasure.equals(tmpTreasure)) {
-                return true;
-            }
-        }
-        return false;
+        Treasure parsed = Treasure.fromName(treasure);
+        return parsed != null && hasTreasure(parsed);
+    }
+
+    public boolean hasTreasure(Treasure treasure) {
+        return (treasures & treasure.bit()) != 0;
+    }
+
+    /**
+     * @return true once all three treasures have been found.
+     */
+    public boolean hasAllTreasures() {
+        return treasures == Treasure.ALL;
     }
 
     /**
@@ -170,25 +228,27 @@ public class Hunter {
      * @return The printable String representation of the inventory.
      */
     public String getInventory() {
-        String printableKit = "";
-        String space = " ";
-
-        for (String item : kit) {
-            if (item != null) {
-                printableKit += item  + space;
+        String printableKit = INVENTORY_TEXT[kit];
+        if (printableKit == null) {
+            StringBuilder text = new StringBuilder();
+            for (int bits = kit; bits != 0; bits &= bits - 1) {
+                text.append(Item.fromOrdinal(Integer.numberOfTrailingZeros(bits)).getName()).append(' ');
             }
+            printableKit = text.toString();
+            INVENTORY_TEXT[kit] = printableKit;
         }
         return printableKit;
     }
 
     public String getTreasureInv() {
-        String printableTreasures = "";
-        String space = " ";
-
-        for (String treasure : treasures) {
-            if (treasure != null) {
-                printableTreasures +=  treasure + space;
+        String printableTreasures = TREASURE_TEXT[treasures];
+        if (printableTreasures == null) {
+            StringBuilder text = new StringBuilder();
+            for (int bits = treasures; bits != 0; bits &= bits - 1) {
+                text.append(Treasure.fromOrdinal(Integer.numberOfTrailingZeros(bits)).getName()).append(' ');
             }
+            printableTreasures = text.toString();
+            TREASURE_TEXT[treasures] = printableTreasures;
         }
         return printableTreasures;
     }
@@ -197,78 +257,16 @@ public class Hunter {
      * @return A string representation of the hunter.
      */
     public String infoString() {
-        String str = hunterName + " has "  + gold +" gold" ;
-        if (!kitIsEmpty()) {
-            str += " and " + getInventory();
+        StringBuilder str = new StringBuilder(hunterName).append(" has ").append(gold).append(" gold");
+        if (kit != 0) {
+            str.append(" and ").append(getInventory());
         }
-        str += "\nTreasures found: ";
-        if (treasuresIsEmpty()){
-            str += "none";
+        str.append("\nTreasures found: ");
+        if (treasures == 0){
+            str.append("none");
         } else {
-            str += getTreasureInv();
-        }
-        return str;
-    }
-
-    public int emptyPositionInTreasures() {
-        for (int i = 0; i < treasures.length; i++) {
-            if (treasures[i] == null) {
-                return i;
-            }
-        }
-        return -1;
-    }
-    /**
-     * Searches kit Array for the index of the specified value.
-     *
-     * @param item String to look for.
-     * @return The index of the item, or -1 if not found.
-     */
-    private int findItemInKit(String item) {
-        for (int i = 0; i < kit.length; i++) {
-            String tmpItem = kit[i];
-
-            if (item.equals(tmpItem)) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
-    /**
-     * Check if the kit is empty - meaning all elements are null.
-     *
-     * @return true if kit is completely empty.
-     */
-    private boolean kitIsEmpty() {
-        for (String string : kit) {
-            if (string != null) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean treasuresIsEmpty() {
-        for (String string : treasures) {
-            if (string != null) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Finds the first index where there is a null value.
-     *
-     * @return index of empty index, or -1 if not found.
-     */
-    private int emptyPositionInKit() {
-        for (int i = 0; i < kit.length; i++) {
-            if (kit[i] == null) {
-                return i;
-            }
+            str.append(getTreasureInv());
         }
-        return -1;
+        return str.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The items a hunter can carry in their kit.<p>
+ * Each item has its own bit, so a whole kit is a single int and checking, adding or removing
+ * an item is one bitwise operation.
+ */
+
+public enum Item {
+    WATER("water"),
+    ROPE("rope"),
+    MACHETE("machete"),
+    HORSE("horse"),
+    BOAT("boat"),
+    BOOTS("boots"),
+    SHOVEL("shovel"),
+    SWORD("sword");
+
+    private static final Item[] VALUES = values();
+    private static final Map<String, Item> BY_NAME = new HashMap<>();
+
+    static {
+        for (Item item : VALUES) {
+            BY_NAME.put(item.name, item);
+        }
+    }
+
+    private final String name;
+    private final int bit;
+
+    Item(String name) {
+        this.name = name;
+        this.bit = 1 << ordinal();
+    }
+
+    /**
+     * @return The name the player types, in lower case.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The bit this item sets in a kit mask.
+     */
+    public int bit() {
+        return bit;
+    }
+
+    /**
+     * Looks up an item from what the player typed.
+     *
+     * @param name The item name, in lower case.
+     * @return The Item, or null if there is no item with that name.
+     */
+    public static Item fromName(String name) {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * @param ordinal The position of the item in the enum.
+     * @return The item at that position.
+     */
+    public static Item fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The JournalReader reads back a journal written by the JournalWriter.<p>
+ * The whole file is read into memory at once and each game's actions are decoded into an array,
+ * so replaying them is just a loop over the engine.
+ */
+
+public class JournalReader {
+
+    /**
+     * One recorded game: everything needed to recreate it and the actions that were taken.
+     */
+    public static class Game {
+        private final long seed;
+        private final Difficulty difficulty;
+        private final String hunterName;
+        private final Action[] actions;
+
+        Game(long seed, Difficulty difficulty, String hunterName, Action[] actions) {
+            this.seed = seed;
+            this.difficulty = difficulty;
+            this.hunterName = hunterName;
+            this.actions = actions;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public Difficulty getDifficulty() {
+            return difficulty;
+        }
+
+        public String getHunterName() {
+            return hunterName;
+        }
+
+        public Action[] getActions() {
+            return actions;
+        }
+
+        /**
+         * @return A fresh GameState in the same position the recorded game started in.
+         */
+        public GameState newState() {
+            return new GameState(hunterName, difficulty, seed);
+        }
+    }
+
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+
+    // instance variables
+    private final byte[] data;
+    private int position;
+
+    private JournalReader(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Reads every game in a journal file.
+     *
+     * @param file The journal file.
+     * @return The games, in the order they were played.
+     * @throws IOException if the file can't be read or isn't a journal.
+     */
+    public static List<Game> read(Path file) throws IOException {
+        return new JournalReader(Files.readAllBytes(file)).readGames();
+    }
+
+    private List<Game> readGames() throws IOException {
+        for (byte b : JournalWriter.MAGIC) {
+            if (position >= data.length || data[position++] != b) {
+                throw new IOException("Not a Treasure Hunter journal");
+            }
+        }
+        List<Game> games = new ArrayList<>();
+        while (position < data.length) {
+            if ((data[position++] & 0xFF) != JournalWriter.GAME_MARKER) {
+                throw new IOException("Journal is damaged at byte " + (position - 1));
+            }
+            if (data.length - position < 8) {
+                throw new IOException("Journal ends part way through a game's seed");
+            }
+            long seed = 0;
+            for (int i = 0; i < 8; i++) {
+                seed = (seed << 8) | (data[position++] & 0xFF);
+            }
+            int ordinal = readVarint();
+            if (ordinal < 0 || ordinal >= DIFFICULTIES.length) {
+                throw new IOException("Journal has an unknown difficulty " + ordinal + " at byte " + position);
+            }
+            Difficulty difficulty = DIFFICULTIES[ordinal];
+            int nameLength = readVarint();
+            if (nameLength < 0 || nameLength > data.length - position) {
+                throw new IOException("Journal ends part way through a hunter's name");
+            }
+            String name = new String(data, position, nameLength, StandardCharsets.UTF_8);
+            position += nameLength;
+
+            List<Action> actions = new ArrayList<>();
+            while (position < data.length && (data[position] & 0xFF) != JournalWriter.GAME_MARKER) {
+                actions.add(Action.decode(readVarint()));
+            }
+            games.add(new Game(seed, difficulty, name, actions.toArray(new Action[0])));
+        }
+        return games;
+    }
+
+    /**
+     * Reads a number written by JournalWriter.writeVarint(). An int never needs more than 5 bytes.
+     */
+    private int readVarint() throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (position == data.length) {
+                throw new IOException("Journal ends part way through a number");
+            }
+            if (shift > 28) {
+                throw new IOException("Journal is damaged at byte " + position);
+            }
+            b = data[position++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,54 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The JournalReplayer plays recorded games back through the GameEngine with nothing drawn on screen.<p>
+ * Because every game keeps its seed, a replay ends exactly the way the real game did.<p>
+ *
+ * Usage: java JournalReplayer journalFile [repeats]
+ */
+
+public class JournalReplayer {
+
+    /**
+     * Plays a recorded game from the start.
+     *
+     * @param engine The engine to play it on.
+     * @param game The recorded game.
+     * @return The state of the game after the last recorded action.
+     */
+    public static GameState replay(GameEngine engine, JournalReader.Game game) {
+        GameState state = game.newState();
+        for (Action action : game.getActions()) {
+            engine.step(state, action);
+        }
+        return state;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<JournalReader.Game> games = JournalReader.read(Path.of(args[0]));
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        GameEngine engine = new GameEngine();
+
+        for (JournalReader.Game game : games) {
+            GameState state = replay(engine, game);
+            System.out.println(game.getHunterName() + " (" + game.getDifficulty().name().toLowerCase()
+                    + ", seed " + game.getSeed() + "): " + game.getActions().length + " turns, ended "
+                    + engine.status(state) + " with " + state.getHunter().infoString().replace('\n', ' '));
+        }
+
+        if (repeats > 1) {
+            long turns = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                for (JournalReader.Game game : games) {
+                    replay(engine, game);
+                    turns += game.getActions().length;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Replayed %d turns in %.2fs (%.0f turns/s)%n", turns, seconds, turns / seconds);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * The JournalWriter records a game so it can be replayed exactly later.<p>
+ * A journal holds one or more games. Each game starts with a header (a marker byte, the seed, the difficulty
+ * and the hunter's name) followed by every action taken, each packed by Action.encode() and written as a varint,
+ * which is a single byte for everything except buying or selling a named item.
+ * Writes go into a buffer and are only sent to the file when a game ends or the journal is closed,
+ * so recording adds next to nothing to each turn.
+ */
+
+public class JournalWriter implements Closeable {
+    static final byte[] MAGIC = {'T', 'H', 'J', '1'};
+    static final int GAME_MARKER = 0xFF; // never a valid action code, so it can't be mistaken for one
+
+    // instance variables
+    private final OutputStream out;
+
+    /**
+     * Opens a journal file, adding to the end if it already exists.
+     *
+     * @param file The journal file.
+     * @throws IOException if the file can't be opened.
+     */
+    public JournalWriter(Path file) throws IOException {
+        boolean isNew = !file.toFile().exists() || file.toFile().length() == 0;
+        out = new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 8192);
+        if (isNew) {
+            out.write(MAGIC);
+        }
+    }
+
+    /**
+     * Starts a new game in the journal.
+     *
+     * @param state The game just created, before any actions have been taken. It can't be on a World map, as the
+     *              header has no room for the map's size.
+     * @throws IOException if the journal can't be written.
+     */
+    public void startGame(GameState state) throws IOException {
+        if (state.getWorld() != null) {
+            throw new IllegalArgumentException("Games on a World map can't be journalled");
+        }
+        out.write(GAME_MARKER);
+        long seed = state.getSeed();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (seed >>> shift));
+        }
+        writeVarint(state.getDifficulty().ordinal());
+        byte[] name = state.getHunter().getHunterName().getBytes(StandardCharsets.UTF_8);
+        writeVarint(name.length);
+        out.write(name);
+    }
+
+    /**
+     * Records one action. Only goes into the buffer; nothing is written to the file yet.
+     *
+     * @param action The action the engine is about to carry out.
+     * @throws IOException if the journal can't be written.
+     */
+    public void record(Action action) throws IOException {
+        writeVarint(action.encode());
+    }
+
+    /**
+     * Sends everything recorded so far to the file.
+     *
+     * @throws IOException if the journal can't be written.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Writes a number 7 bits at a time, lowest bits first, with the top bit of each byte
+     * saying whether another byte follows.
+     */
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,420 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * The Leaderboard keeps the best finished games for each mode, so players can see who won and how fast.<p>
+ * Each mode has its own ConcurrentSkipListSet, kept sorted best first: most treasures, then fewest turns for a
+ * win (or most turns for a loss), then most gold, then whoever got there first. Games from many sessions go in without a lock, and the top
+ * few are just the first few nodes of the list. Only the best keepPerMode games of each mode are kept,
+ * because a game that far down can never turn up in a top-K query; whenever a new game pushes a mode over
+ * its limit, the worst one is dropped.<p>
+ * Every game is also appended to a log file, so the board survives a restart. Appending is the only part
+ * done under a lock. Once the log holds a few times more games than the board, it is compacted: the kept
+ * games are written to a new file, which then replaces the log. The log therefore stays small and a restart
+ * reads only a few thousand records. A log that did grow to tens of millions of records (an old one, or
+ * one whose compaction never ran) still loads in one pass, because a record that wouldn't make the board
+ * is skipped without reading its name, and the log is then compacted straight away.<p>
+ * A game being recorded while the log is compacted can end up in the file twice. Every game has its own
+ * number, so the copy is recognised as the same game and dropped when the log is read back.<p>
+ *
+ * Usage: java Leaderboard [logFile] [k] to print the top k of each mode, or
+ * java Leaderboard [logFile] --fill [games] to record that many random games and time a restart.
+ */
+
+public class Leaderboard implements Closeable {
+    private static final int MAGIC = 0x54484C31; // "THL1"
+    private static final int DEFAULT_KEEP = 10_000;
+    // the log is compacted when it holds this many times more records than the board
+    private static final int COMPACT_FACTOR = 4;
+    private static final int MAX_NAME_BYTES = 255;
+
+    private static final int ALL_TREASURES = Integer.bitCount(Treasure.ALL);
+
+    // a win is better the faster it was; a loss is better the longer the hunter held out
+    private static final Comparator<Entry> BEST_FIRST = Comparator
+            .comparingInt((Entry e) -> -e.treasures)
+            .thenComparingInt(e -> e.treasures == ALL_TREASURES ? e.turns : -e.turns)
+            .thenComparingInt(e -> -e.gold)
+            .thenComparingLong(e -> e.game);
+
+    /**
+     * One finished game on the board.
+     */
+    public static final class Entry {
+        private final long game;
+        private final String name;
+        private final Difficulty mode;
+        private final int turns;
+        private final int gold;
+        private final int treasures;
+
+        private Entry(long game, String name, Difficulty mode, int turns, int gold, int treasures) {
+            this.game = game;
+            this.name = name;
+            this.mode = mode;
+            this.turns = turns;
+            this.gold = gold;
+            this.treasures = treasures;
+        }
+
+        // accessors
+        public String getName() {
+            return name;
+        }
+
+        public Difficulty getMode() {
+            return mode;
+        }
+
+        public int getTurns() {
+            return turns;
+        }
+
+        public int getGold() {
+            return gold;
+        }
+
+        public int getTreasures() {
+            return treasures;
+        }
+
+        @Override
+        public String toString() {
+            return name + " - " + treasures + " treasure" + (treasures == 1 ? "" : "s") + " in " + turns
+                    + " turn" + (turns == 1 ? "" : "s") + ", " + gold + " gold";
+        }
+    }
+
+    // instance variables
+    private final Path file;
+    private final int keepPerMode;
+    private final List<ConcurrentSkipListSet<Entry>> boards;
+    private final AtomicInteger[] sizes;
+    private final AtomicLong nextGame = new AtomicLong();
+    private DataOutputStream log;
+    private long logRecords;
+
+    /**
+     * Opens a leaderboard that keeps the best 10,000 games of each mode.
+     *
+     * @param file The log file. It is created if it doesn't exist.
+     * @throws IOException if the log can't be read or written.
+     */
+    public Leaderboard(Path file) throws IOException {
+        this(file, DEFAULT_KEEP);
+    }
+
+    /**
+     * Opens a leaderboard, reading back every game in its log.
+     *
+     * @param file The log file. It is created if it doesn't exist.
+     * @param keepPerMode How many games of each mode to keep.
+     * @throws IOException if the log can't be read or written, or isn't a leaderboard log, or is damaged
+     * anywhere but a cut-off last record.
+     */
+    public Leaderboard(Path file, int keepPerMode) throws IOException {
+        this.file = file;
+        this.keepPerMode = keepPerMode;
+        int modes = Difficulty.values().length;
+        boards = new ArrayList<>(modes);
+        sizes = new AtomicInteger[modes];
+        for (int i = 0; i < modes; i++) {
+            boards.add(new ConcurrentSkipListSet<>(BEST_FIRST));
+            sizes[i] = new AtomicInteger();
+        }
+
+        boolean damaged = false;
+        if (Files.exists(file) && Files.size(file) > 0) {
+            damaged = load();
+        }
+        if (damaged || logRecords > compactionThreshold()) {
+            rewrite();
+        } else {
+            boolean isNew = !Files.exists(file) || Files.size(file) == 0;
+            log = openLog();
+            if (isNew) {
+                log.writeInt(MAGIC);
+            }
+        }
+    }
+
+    /**
+     * Puts a finished game on the board and appends it to the log.
+     * The log is only sent to the file by flush(), so call that once the game is over.
+     *
+     * @param name The hunter's name.
+     * @param mode The mode the game was played on.
+     * @param turns How many actions the game took.
+     * @param gold The gold the hunter finished with.
+     * @param treasures How many treasures the hunter found.
+     * @return The game's entry.
+     * @throws IOException if the log can't be written. The game stays on the board anyway.
+     */
+    public Entry record(String name, Difficulty mode, int turns, int gold, int treasures) throws IOException {
+        Entry entry = new Entry(nextGame.getAndIncrement(), name, mode, turns, gold, treasures);
+        add(entry);
+        append(entry);
+        return entry;
+    }
+
+    /**
+     * @param mode The mode.
+     * @param k How many games to return.
+     * @return The best k games played on the mode, best first.
+     */
+    public List<Entry> top(Difficulty mode, int k) {
+        List<Entry> top = new ArrayList<>(Math.min(k, keepPerMode));
+        Iterator<Entry> entries = boards.get(mode.ordinal()).iterator();
+        while (top.size() < k && entries.hasNext()) {
+            top.add(entries.next());
+        }
+        return top;
+    }
+
+    /**
+     * @param mode The mode.
+     * @return How many games of the mode are on the board.
+     */
+    public int size(Difficulty mode) {
+        return sizes[mode.ordinal()].get();
+    }
+
+    /**
+     * Sends every game recorded so far to the log file.
+     *
+     * @throws IOException if the log can't be written.
+     */
+    public synchronized void flush() throws IOException {
+        log.flush();
+    }
+
+    /**
+     * Rewrites the log so it holds only the games on the board, then carries on appending to the new log.
+     *
+     * @throws IOException if the new log can't be written. The old log is left as it was and games are
+     * still appended to it.
+     */
+    public synchronized void compact() throws IOException {
+        rewrite();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    private void add(Entry entry) {
+        int mode = entry.mode.ordinal();
+        if (boards.get(mode).add(entry) && sizes[mode].incrementAndGet() > keepPerMode) {
+            if (boards.get(mode).pollLast() != null) {
+                sizes[mode].decrementAndGet();
+            }
+        }
+    }
+
+    private synchronized void append(Entry entry) throws IOException {
+        write(log, entry);
+        logRecords++;
+        if (logRecords > compactionThreshold()) {
+            rewrite();
+        }
+    }
+
+    private long compactionThreshold() {
+        return (long) COMPACT_FACTOR * keepPerMode * boards.size();
+    }
+
+    private DataOutputStream openLog() throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 8192));
+    }
+
+    /**
+     * Does the work of compact(), which the constructor also needs before the board is ready.<p>
+     * The old log is only closed once the new one is complete, and is reopened if the new one can't be moved
+     * into its place, so a failed compaction never leaves the board without a log.
+     */
+    private void rewrite() throws IOException {
+        if (log != null) {
+            // whatever is still buffered has to reach the old log in case it ends up being kept
+            log.flush();
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long written = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 65536))) {
+            out.writeInt(MAGIC);
+            for (ConcurrentSkipListSet<Entry> board : boards) {
+                for (Entry entry : board) {
+                    write(out, entry);
+                    written++;
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            if (log != null) {
+                log.close();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            if (log != null) {
+                log = openLog();
+            }
+            throw e;
+        }
+        logRecords = written;
+        log = openLog();
+    }
+
+    /**
+     * A record is the game number, mode, treasures, turns and gold, then the name as UTF-8 after its length.
+     */
+    private static void write(DataOutputStream out, Entry entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(name.length, MAX_NAME_BYTES);
+        out.writeLong(entry.game);
+        out.writeByte(entry.mode.ordinal());
+        out.writeByte(entry.treasures);
+        out.writeInt(entry.turns);
+        out.writeInt(entry.gold);
+        out.writeByte(length);
+        out.write(name, 0, length);
+    }
+
+    /**
+     * Reads the log back onto the board.
+     *
+     * @return true if the log ends part way through a record (the program stopped while writing it),
+     * in which case it needs rewriting before anything else is appended.
+     */
+    private boolean load() throws IOException {
+        Difficulty[] modes = Difficulty.values();
+        byte[] name = new byte[MAX_NAME_BYTES];
+        long lastGame = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file.toFile()), 65536))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a leaderboard log");
+            }
+            while (true) {
+                long game;
+                try {
+                    game = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    int ordinal = in.readUnsignedByte();
+                    if (ordinal >= modes.length) {
+                        // unlike a cut-off tail, this isn't something compacting should quietly drop
+                        throw new IOException("Damaged leaderboard log: game " + game + " has an unknown mode " + ordinal);
+                    }
+                    Difficulty mode = modes[ordinal];
+                    int treasures = in.readUnsignedByte();
+                    int turns = in.readInt();
+                    int gold = in.readInt();
+                    int length = in.readUnsignedByte();
+                    lastGame = Math.max(lastGame, game);
+                    logRecords++;
+                    Entry probe = new Entry(game, null, mode, turns, gold, treasures);
+                    if (!wouldKeep(probe)) {
+                        in.skipNBytes(length);
+                        continue;
+                    }
+                    in.readFully(name, 0, length);
+                    add(new Entry(game, new String(name, 0, length, StandardCharsets.UTF_8), mode, turns, gold, treasures));
+                } catch (EOFException e) {
+                    nextGame.set(lastGame + 1);
+                    return true;
+                }
+            }
+        }
+        nextGame.set(lastGame + 1);
+        return false;
+    }
+
+    private boolean wouldKeep(Entry entry) {
+        int mode = entry.mode.ordinal();
+        return sizes[mode].get() < keepPerMode || BEST_FIRST.compare(entry, boards.get(mode).last()) < 0;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Path.of(args.length > 0 ? args[0] : "leaderboard.log");
+        if (args.length > 2 && args[1].equals("--fill")) {
+            fill(file, Long.parseLong(args[2]));
+            return;
+        }
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        try (Leaderboard board = new Leaderboard(file)) {
+            for (Difficulty mode : Difficulty.values()) {
+                List<Entry> top = board.top(mode, k);
+                if (top.isEmpty()) {
+                    continue;
+                }
+                System.out.println(mode + ":");
+                for (int i = 0; i < top.size(); i++) {
+                    System.out.println("  " + (i + 1) + ". " + top.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records random games from every core, then reopens the board and times the restart and top-10 queries.
+     */
+    private static void fill(Path file, long games) throws IOException {
+        Difficulty[] modes = Difficulty.values();
+        long start = System.nanoTime();
+        try (Leaderboard board = new Leaderboard(file)) {
+            IntStream.range(0, Runtime.getRuntime().availableProcessors()).parallel().forEach(worker -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long share = games / Runtime.getRuntime().availableProcessors();
+                try {
+                    for (long i = 0; i < share; i++) {
+                        board.record("hunter" + random.nextInt(1_000_000), modes[random.nextInt(modes.length)],
+                                1 + random.nextInt(1000), random.nextInt(200), random.nextInt(4));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            board.flush();
+        }
+        System.out.printf("Recorded %d games in %.1fs%n", games, (System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        try (Leaderboard board = new Leaderboard(file)) {
+            System.out.printf("Reopened in %.1f ms, log is %d bytes%n", (System.nanoTime() - start) / 1e6, Files.size(file));
+            List<Entry> top = board.top(Difficulty.NORMAL, 10);
+            int queries = 100_000;
+            start = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                top = board.top(modes[i % modes.length], 10);
+            }
+            System.out.printf("Top 10 in %.2f us on average, best on %s: %s%n",
+                    (System.nanoTime() - start) / 1e3 / queries, top.get(0).getMode(), top.get(0));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Market is shared by every game on a server, so what one player buys or sells changes the prices
+ * everyone else sees.<p>
+ * Each region keeps the supply of every item. A region is a kind of terrain: all the shops in mountain
+ * towns trade in one market and all the desert shops in another. A sale adds one to the supply and a
+ * purchase takes one away. The counts are LongAdders, so players buying the same item at the same moment
+ * add to different cells instead of fighting over one counter.<p>
+ * Prices aren't worked out under a lock either. Every few trades (picked at random, so no shared counter is
+ * needed to decide) the trading thread sums that one item's supply, works out its new price factor and
+ * publishes it with a plain write. A factor that hasn't changed isn't written, so the price stays in every
+ * reader's cache. Prices therefore trail the trades by a few sales.<p>
+ * Each reprice also restocks a little: the supply moves part of the way back to normal, so a run on an item
+ * makes it dearer for a while rather than for good.<p>
+ * The market only holds a factor for each price. A Shop applies it to its own PriceTable, so games on
+ * different difficulties can share one market and still keep their own prices and markdown.
+ */
+
+public class Market {
+    // factors are kept in thousandths
+    private static final int PAR = 1000;
+    private static final int MIN_FACTOR = 500;
+    private static final int MAX_FACTOR = 2000;
+    // how much each unit of supply moves the price, as a fraction of the price
+    private static final double ELASTICITY = 0.01;
+    // on average one trade in this many reprices its item (must be a power of two)
+    private static final int REPRICE_EVERY = 8;
+    // each reprice moves the supply this fraction of the way back to 0
+    private static final int RESTOCK_DIVISOR = 8;
+
+    // instance variables
+    private final int regions;
+    private final int items;
+    private final LongAdder[] supply; // indexed by region * items + item
+    private final AtomicIntegerArray factors;
+
+    /**
+     * Makes a market with one region per kind of terrain.
+     */
+    public Market() {
+        this(Terrain.count());
+    }
+
+    /**
+     * @param regions How many separate regions trade in the market.
+     */
+    public Market(int regions) {
+        this.regions = regions;
+        items = Item.values().length;
+        supply = new LongAdder[regions * items];
+        factors = new AtomicIntegerArray(regions * items);
+        for (int i = 0; i < supply.length; i++) {
+            supply[i] = new LongAdder();
+            factors.set(i, PAR);
+        }
+    }
+
+    public int getRegions() {
+        return regions;
+    }
+
+    /**
+     * @param region The region being traded in.
+     * @param item The item.
+     * @return How many more of the item have been sold to the region's shops than bought from them, less restocking.
+     */
+    public long getSupply(int region, Item item) {
+        return supply[slot(region, item)].sum();
+    }
+
+    /**
+     * @param region The region being traded in.
+     * @param item The item.
+     * @return What the item costs in the region compared to normal, in thousandths.
+     */
+    public int getFactor(int region, Item item) {
+        return factors.get(slot(region, item));
+    }
+
+    /**
+     * Applies the region's going rate to a price.
+     *
+     * @param region The region being traded in.
+     * @param item The item.
+     * @param normalPrice What the item usually costs (or fetches). A price of 0 means it isn't traded and stays 0.
+     * @return The price today, never less than 1 gold for an item that is traded.
+     */
+    public int price(int region, Item item, int normalPrice) {
+        if (normalPrice == 0) {
+            return 0;
+        }
+        long price = (long) normalPrice * factors.get(slot(region, item)) / PAR;
+        return (int) Math.max(1, price);
+    }
+
+    /**
+     * Records a hunter buying an item from one of the region's shops.
+     *
+     * @param region The region being traded in.
+     * @param item The item bought.
+     */
+    public void bought(int region, Item item) {
+        trade(slot(region, item), -1);
+    }
+
+    /**
+     * Records a hunter selling an item to one of the region's shops.
+     *
+     * @param region The region being traded in.
+     * @param item The item sold.
+     */
+    public void sold(int region, Item item) {
+        trade(slot(region, item), 1);
+    }
+
+    /**
+     * Brings every price up to date with its supply, for example before a report.
+     */
+    public void repriceAll() {
+        for (int i = 0; i < supply.length; i++) {
+            reprice(i);
+        }
+    }
+
+    private int slot(int region, Item item) {
+        return region * items + item.ordinal();
+    }
+
+    private void trade(int slot, int change) {
+        supply[slot].add(change);
+        if ((ThreadLocalRandom.current().nextInt() & (REPRICE_EVERY - 1)) == 0) {
+            reprice(slot);
+        }
+    }
+
+    /**
+     * Works out one item's price from its supply. Two threads repricing the same item at once both restock it,
+     * which only means that item gets restocked a bit sooner.
+     */
+    private void reprice(int slot) {
+        long current = supply[slot].sum();
+        long restock = current / RESTOCK_DIVISOR;
+        if (restock != 0) {
+            supply[slot].add(-restock);
+        }
+        int factor = factorFor(current - restock);
+        if (factors.get(slot) != factor) {
+            factors.set(slot, factor);
+        }
+    }
+
+    /**
+     * Scarce items (negative supply) get dearer and plentiful ones get cheaper, within limits.
+     */
+    private static int factorFor(long supply) {
+        double factor = PAR * Math.exp(-ELASTICITY * supply);
+        return (int) Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, Math.round(factor)));
+    }
+}
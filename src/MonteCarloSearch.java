@@ -0,0 +1,420 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The MonteCarloSearch suggests a move by playing the rest of the game out thousands of times from where the
+ * player is, within a fixed time budget, and picking the move that won most often.<p>
+ * The search runs on PackedStates, so it only reads the real game once, to pack it, and never changes it.
+ * Every worker thread builds its own tree with UCT: from the current situation it keeps picking the most
+ * promising move (balancing how often a move has won against how little it has been tried), stepping a packed
+ * state with its own random numbers, until it reaches a situation it hasn't seen before. From there the game
+ * is played out with GreedyBot's strategy, and the win or loss is added to every move on the way down.
+ * Situations are looked up by their packed state, so a situation reached by different routes (or a brawl
+ * that found no trouble and led straight back) is one node, not several.<p>
+ * The trees are kept in primitive arrays that each thread reuses from one search to the next, so searching
+ * makes no garbage. When the time is up the workers' counts for the first move are added together; the move
+ * tried most often is the suggestion, and the share of its playouts that were won is the chance of winning.<p>
+ * The moves considered are the same as the QLearner's: hunt, dig, brawl, move, or buy the item that crosses
+ * the terrain, a shovel or a sword.<p>
+ *
+ * Usage: java MonteCarloSearch [budgetMillis] [games] [difficulty] to play whole games with it
+ */
+
+public class MonteCarloSearch implements BotPolicy, AutoCloseable {
+    private static final int TABLE_BITS = 16; // nodes in each worker's tree
+    private static final int MAX_DEPTH = 64;
+    private static final int MAX_PLAYOUT_TURNS = 500;
+    private static final double EXPLORATION = 0.7;
+    private static final int CHECK_CLOCK_EVERY = 16;
+
+    private static final int HUNT = Action.hunt().encode();
+    private static final int DIG = Action.dig().encode();
+    private static final int BRAWL = Action.brawl().encode();
+    private static final int MOVE = Action.move().encode();
+    private static final int BUY_SHOVEL = Action.buy("shovel", true).encode();
+    private static final int BUY_SWORD = Action.buy("sword", true).encode();
+    private static final int[] BUY_CROSSING = new int[Terrain.count()];
+
+    static {
+        for (int i = 0; i < BUY_CROSSING.length; i++) {
+            BUY_CROSSING[i] = Action.buy(Terrain.get(i).getNeededItem(), true).encode();
+        }
+    }
+
+    /**
+     * What a search came up with.
+     */
+    public static final class Result {
+        private final Action action;
+        private final double winChance;
+        private final long playouts;
+
+        private Result(Action action, double winChance, long playouts) {
+            this.action = action;
+            this.winChance = winChance;
+            this.playouts = playouts;
+        }
+
+        // accessors
+        public Action getAction() {
+            return action;
+        }
+
+        public double getWinChance() {
+            return winChance;
+        }
+
+        public long getPlayouts() {
+            return playouts;
+        }
+    }
+
+    // instance variables
+    private final ForkJoinPool pool;
+    private final int workers;
+    private final long budgetNanos;
+    private final AtomicLong searches = new AtomicLong();
+    private final ConcurrentHashMap<DifficultyProfile, PackedState> rules = new ConcurrentHashMap<>();
+    private final ThreadLocal<Tree> trees = ThreadLocal.withInitial(Tree::new);
+
+    /**
+     * Searches on every core.
+     *
+     * @param budgetMillis How long each search may take.
+     */
+    public MonteCarloSearch(long budgetMillis) {
+        this(budgetMillis, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param budgetMillis How long each search may take.
+     * @param workers How many threads search at once, each with its own tree.
+     */
+    public MonteCarloSearch(long budgetMillis, int workers) {
+        this.workers = workers;
+        budgetNanos = budgetMillis * 1_000_000;
+        pool = new ForkJoinPool(workers);
+    }
+
+    /**
+     * Stops the search's threads once any search in progress is done. Searching again after this fails.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Searches for the best move from where the game is now. The game itself isn't changed.
+     *
+     * @param game The game being played.
+     * @return The best move found and its chance of winning.
+     */
+    public Result search(GameState game) {
+        long deadline = System.nanoTime() + budgetNanos;
+        PackedState packed = rules.computeIfAbsent(game.getProfile(), PackedState::new);
+        long root = packed.of(game);
+        long seed = SplittableRandomSource.seedFor(game.getSeed(), searches.getAndIncrement());
+
+        List<Callable<long[]>> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            long workerSeed = SplittableRandomSource.seedFor(seed, i);
+            tasks.add(() -> trees.get().search(packed, root, deadline, workerSeed));
+        }
+        long[] visits = new long[QLearner.ACTIONS];
+        long[] wins = new long[QLearner.ACTIONS];
+        try {
+            for (Future<long[]> done : pool.invokeAll(tasks)) {
+                long[] counts = done.get();
+                for (int a = 0; a < QLearner.ACTIONS; a++) {
+                    visits[a] += counts[a];
+                    wins[a] += counts[QLearner.ACTIONS + a];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The search failed", e.getCause());
+        }
+
+        int legal = legalActions(packed, root);
+        int best = Integer.numberOfTrailingZeros(legal);
+        long playouts = 0;
+        for (int a = 0; a < QLearner.ACTIONS; a++) {
+            playouts += visits[a];
+            if ((legal & (1 << a)) != 0 && visits[a] > visits[best]) {
+                best = a;
+            }
+        }
+        double winChance = visits[best] == 0 ? 0 : (double) wins[best] / visits[best];
+        return new Result(QLearner.toAction(best, game), winChance, playouts);
+    }
+
+    @Override
+    public Action chooseAction(GameState state) {
+        return search(state).getAction();
+    }
+
+    @Override
+    public String hint(GameState state) {
+        Result result = search(state);
+        return result.getAction().describe() + " (about " + Math.round(result.getWinChance() * 100)
+                + "% chance of winning from there, from " + result.getPlayouts() + " games played out)";
+    }
+
+    /**
+     * The same moves QLearner.legalActions() allows, worked out from a packed state. Unlike the QLearner, the
+     * search sees the hunter's exact gold, so brawling is always allowed unless the hunter has a sword.
+     */
+    private static int legalActions(PackedState packed, long state) {
+        boolean hasSword = PackedState.hasItem(state, Item.SWORD);
+        int legal = 0;
+        if (!PackedState.isSearched(state)) {
+            legal |= 1 << QLearner.HUNT;
+        }
+        if (PackedState.hasItem(state, Item.SHOVEL) && !PackedState.isDug(state)) {
+            legal |= 1 << QLearner.DIG;
+        }
+        if (!hasSword) {
+            legal |= 1 << QLearner.BRAWL;
+        }
+        if (PackedState.canCross(state)) {
+            legal |= 1 << QLearner.MOVE;
+        } else if (canBuy(packed, state, PackedState.terrain(state).getRequiredItem(), hasSword)) {
+            legal |= 1 << QLearner.BUY_CROSSING;
+        }
+        if (!PackedState.hasItem(state, Item.SHOVEL) && canBuy(packed, state, Item.SHOVEL, hasSword)) {
+            legal |= 1 << QLearner.BUY_SHOVEL;
+        }
+        if (!hasSword && packed.getProfile().getDifficulty().isSamuraiMode()) {
+            legal |= 1 << QLearner.BUY_SWORD;
+        }
+        return legal == 0 ? 1 << QLearner.BRAWL : legal;
+    }
+
+    private static boolean canBuy(PackedState packed, long state, Item item, boolean hasSword) {
+        if (hasSword && item == Item.BOOTS) {
+            return true; // the shopkeeper hands them over
+        }
+        int cost = packed.buyPrice(item);
+        return cost > 0 && PackedState.gold(state) >= cost;
+    }
+
+    /**
+     * @return The move as an Action.encode() code, for PackedState.step().
+     */
+    private static int code(int action, long state) {
+        switch (action) {
+            case QLearner.HUNT:
+                return HUNT;
+            case QLearner.DIG:
+                return DIG;
+            case QLearner.BRAWL:
+                return BRAWL;
+            case QLearner.MOVE:
+                return MOVE;
+            case QLearner.BUY_CROSSING:
+                return BUY_CROSSING[PackedState.terrain(state).getIndex()];
+            case QLearner.BUY_SHOVEL:
+                return BUY_SHOVEL;
+            default:
+                return BUY_SWORD;
+        }
+    }
+
+    /**
+     * One worker's search tree, kept between searches. A slot belongs to the current search only if its
+     * stamp matches, so starting a new search doesn't need the arrays cleared.
+     */
+    private static class Tree {
+        private static final int CAPACITY = 1 << TABLE_BITS;
+        private static final int MASK = CAPACITY - 1;
+        private static final int MAX_NODES = CAPACITY * 3 / 4;
+
+        private final long[] keys = new long[CAPACITY];
+        private final int[] stamps = new int[CAPACITY];
+        private final int[] legal = new int[CAPACITY];
+        private final int[] nodeVisits = new int[CAPACITY];
+        private final int[] visits = new int[CAPACITY * QLearner.ACTIONS];
+        private final int[] wins = new int[CAPACITY * QLearner.ACTIONS];
+        private final int[] pathNodes = new int[MAX_DEPTH];
+        private final int[] pathActions = new int[MAX_DEPTH];
+        private int stamp;
+        private int nodes;
+        private PackedState packed;
+        private RandomSource random;
+
+        /**
+         * Searches until the deadline.
+         *
+         * @return The visits of each first move, followed by the wins of each.
+         */
+        long[] search(PackedState packed, long root, long deadline, long seed) {
+            this.packed = packed;
+            random = new SplittableRandomSource(seed);
+            stamp++;
+            nodes = 0;
+            int rootNode = add(root);
+            do {
+                for (int i = 0; i < CHECK_CLOCK_EVERY; i++) {
+                    iterate(root, rootNode);
+                }
+            } while (System.nanoTime() < deadline);
+
+            long[] counts = new long[2 * QLearner.ACTIONS];
+            for (int a = 0; a < QLearner.ACTIONS; a++) {
+                counts[a] = visits[rootNode * QLearner.ACTIONS + a];
+                counts[QLearner.ACTIONS + a] = wins[rootNode * QLearner.ACTIONS + a];
+            }
+            return counts;
+        }
+
+        /**
+         * Walks down the tree to a new situation, plays the game out from there, and counts the result
+         * against every move on the way.
+         */
+        private void iterate(long root, int rootNode) {
+            long state = root;
+            int node = rootNode;
+            int depth = 0;
+            int won;
+            while (true) {
+                Outcome.Status status = PackedState.status(state);
+                if (status != Outcome.Status.PLAYING) {
+                    won = status == Outcome.Status.WON ? 1 : 0;
+                    break;
+                }
+                if (depth == MAX_DEPTH) {
+                    won = playOut(state);
+                    break;
+                }
+                int action = select(node);
+                pathNodes[depth] = node;
+                pathActions[depth] = action;
+                depth++;
+                state = packed.step(state, code(action, state), random);
+                int next = find(state);
+                if (next < 0) {
+                    if (nodes < MAX_NODES) {
+                        add(state);
+                    }
+                    won = playOut(state);
+                    break;
+                }
+                node = next;
+            }
+            for (int d = 0; d < depth; d++) {
+                int entry = pathNodes[d] * QLearner.ACTIONS + pathActions[d];
+                nodeVisits[pathNodes[d]]++;
+                visits[entry]++;
+                wins[entry] += won;
+            }
+        }
+
+        /**
+         * UCT: every move is tried once, then the one with the best win rate plus a bonus for being tried
+         * less often than the others.
+         */
+        private int select(int node) {
+            int moves = legal[node];
+            int base = node * QLearner.ACTIONS;
+            double logTotal = Math.log(nodeVisits[node]);
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int a = 0; a < QLearner.ACTIONS; a++) {
+                if ((moves & (1 << a)) == 0) {
+                    continue;
+                }
+                int n = visits[base + a];
+                if (n == 0) {
+                    return a;
+                }
+                double score = (double) wins[base + a] / n + EXPLORATION * Math.sqrt(logTotal / n);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = a;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * @return 1 if GreedyBot's strategy wins the game from here, otherwise 0.
+         */
+        private int playOut(long state) {
+            for (int turn = 0; turn < MAX_PLAYOUT_TURNS; turn++) {
+                Outcome.Status status = PackedState.status(state);
+                if (status != Outcome.Status.PLAYING) {
+                    return status == Outcome.Status.WON ? 1 : 0;
+                }
+                state = packed.step(state, GreedyBot.choose(packed, state), random);
+            }
+            return 0;
+        }
+
+        private int find(long state) {
+            for (int slot = hash(state); stamps[slot] == stamp; slot = (slot + 1) & MASK) {
+                if (keys[slot] == state) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private int add(long state) {
+            int slot = hash(state);
+            while (stamps[slot] == stamp) {
+                slot = (slot + 1) & MASK;
+            }
+            stamps[slot] = stamp;
+            keys[slot] = state;
+            legal[slot] = legalActions(packed, state);
+            nodeVisits[slot] = 0;
+            int base = slot * QLearner.ACTIONS;
+            for (int a = 0; a < QLearner.ACTIONS; a++) {
+                visits[base + a] = 0;
+                wins[base + a] = 0;
+            }
+            nodes++;
+            return slot;
+        }
+
+        private static int hash(long state) {
+            long mixed = state * 0x9E3779B97F4A7C15L;
+            return (int) (mixed >>> (64 - TABLE_BITS));
+        }
+    }
+
+    public static void main(String[] args) {
+        long budget = args.length > 0 ? Long.parseLong(args[0]) : 5;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Difficulty difficulty = args.length > 2 ? Difficulty.valueOf(args[2].toUpperCase()) : Difficulty.NORMAL;
+        MonteCarloSearch search = new MonteCarloSearch(budget);
+        GameEngine engine = new GameEngine();
+        int won = 0;
+        long moves = 0;
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++) {
+            GameState state = new GameState("search", difficulty, SplittableRandomSource.seedFor(42, g));
+            for (int turn = 0; turn < 1000; turn++) {
+                Outcome outcome = engine.step(state, search.chooseAction(state));
+                moves++;
+                if (outcome.isOver()) {
+                    if (outcome.getStatus() == Outcome.Status.WON) {
+                        won++;
+                    }
+                    break;
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: won %d of %d games (%.1f%%) with %d ms per move, %.1f ms per move on average%n",
+                difficulty, won, games, 100.0 * won / games, budget, seconds * 1000 / moves);
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * A Renderer that throws all text away, for simulations and servers where nobody is watching.
+ */
+
+public class NullRenderer implements Renderer {
+    public static final NullRenderer INSTANCE = new NullRenderer();
+
+    private NullRenderer() {
+    }
+
+    @Override
+    public void print(String text, TextColor color) {
+    }
+
+    @Override
+    public void clear() {
+    }
+}
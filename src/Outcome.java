@@ -0,0 +1,53 @@
+/**
+ * The Outcome class is what the GameEngine hands back after carrying out an Action.<p>
+ * It holds what the player should be told right away and whether the game is still going.
+ * What happened is kept as packed GameEvents; the text is only built if getMessage() is called,
+ * so games played without a screen never build any.
+ */
+
+public class Outcome {
+    public enum Status { PLAYING, WON, LOST, QUIT }
+
+    // instance variables
+    private final long news;
+    private final String hunterName;
+    private final Status status;
+
+    /**
+     * @param news What the action produced, as packed GameEvents, or 0 if there is nothing to show.
+     * @param hunterName The name of the hunter, for the events that mention it.
+     * @param status The state of the game after the action.
+     */
+    public Outcome(long news, String hunterName, Status status) {
+        this.news = news;
+        this.hunterName = hunterName;
+        this.status = status;
+    }
+
+    // accessors
+    public long getNews() {
+        return news;
+    }
+
+    /**
+     * @return The text produced by the action, or an empty String if there is nothing to show.
+     */
+    public String getMessage() {
+        return GameEvent.render(news, hunterName);
+    }
+
+    /**
+     * @return true if the message is a warning (the front end shows these in red).
+     */
+    public boolean isAlert() {
+        return GameEvent.isAlert(news);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isOver() {
+        return status != Status.PLAYING;
+    }
+}
@@ -1,38 +1,170 @@
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import javax.swing.JFrame;
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.Style;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
 
-public class OutputWindow {
+/**
+ * The OutputWindow shows the game's text in a Swing window.<p>
+ * Text added from the game thread is collected in a buffer and written to the window
+ * at most once per frame, on the Swing event thread. Runs of text in the same color are joined,
+ * so a whole menu usually goes into the document in a single insert and is painted once.<p>
+ * This is the Swing Renderer; the game prints to it through the Renderer interface.<p>
+ * The window is built on a background thread, so the game can show its first prompt and start reading
+ * input straight away. Anything printed before the window is ready waits in the buffer.
+ */
 
+public class OutputWindow implements Renderer {
+    private static final int FRAME_MILLIS = 16;
+
+    // only touched on the Swing event thread
     private StyledDocument doc;
-    private Style style;
     private JTextPane textPane;
+    private final Map<Color, Style> styles = new HashMap<>();
+
+    // shared between the game thread and the event thread, guarded by lock
+    private final Object lock = new Object();
+    private List<Run> pending = new ArrayList<>();
+    private boolean pendingClear;
+    private boolean flushScheduled;
+    private Timer flushTimer; // null until the window has been started
+
+    private final Color[] colors = new Color[TextColor.values().length];
 
     public OutputWindow() {
-        JFrame frame = new JFrame("Test");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // causes program to end when window is X'd out
-        frame.setSize(500, 400); // window size
-        frame.setLocation(300, 50); // where on screen window appears
-        textPane = new JTextPane(); // panel that can handle custom text
-        textPane.setEditable(false); // prevents user from typing into window
-        doc = textPane.getStyledDocument(); // call getter method for panel's style doc
-        style = doc.addStyle("my style", null); // add a custom style to the doc
-        StyleConstants.setFontSize(style, 25); // apply font size to custom style
-        frame.add(textPane); // add the panel to the frame
-        frame.setVisible(true); // display the frame on screen
+        Thread startup = new Thread(this::start, "window-startup");
+        startup.start();
+    }
+
+    /**
+     * Loads Swing, builds the frame on the event thread and starts the frame timer.
+     * Runs on the window-startup thread.
+     */
+    private void start() {
+        Timer timer = new Timer(FRAME_MILLIS, e -> drain());
+        timer.setRepeats(false);
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Test");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // causes program to end when window is X'd out
+            frame.setSize(500, 400); // window size
+            frame.setLocation(300, 50); // where on screen window appears
+            textPane = new JTextPane(); // panel that can handle custom text
+            textPane.setEditable(false); // prevents user from typing into window
+            doc = textPane.getStyledDocument(); // call getter method for panel's style doc
+            frame.add(textPane); // add the panel to the frame
+            frame.setVisible(true); // display the frame on screen
+        });
+        synchronized (lock) {
+            flushTimer = timer;
+            if (flushScheduled) {
+                // text arrived while the window was starting
+                timer.restart();
+            }
+        }
+    }
+
+    @Override
+    public void print(String text, TextColor color) {
+        Color awtColor = colors[color.ordinal()];
+        if (awtColor == null) {
+            awtColor = new Color(color.getRgb());
+            colors[color.ordinal()] = awtColor;
+        }
+        addTextToWindow(text, awtColor);
     }
 
     public void addTextToWindow(String text, Color color) {
-        StyleConstants.setForeground(style, color); // apply color to custom style
-        try {
-            doc.insertString(doc.getLength(), text, style); } // insert text at end the panel
-        catch (Exception e) { }
+        synchronized (lock) {
+            Run last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+            if (last != null && last.color.equals(color)) {
+                last.text.append(text);
+            } else {
+                pending.add(new Run(text, color));
+            }
+            scheduleFlush();
+        }
     }
 
+    @Override
     public void clear() {
-        textPane.setText("");  // set panel's text to empty string to "reset it"
+        synchronized (lock) {
+            // anything still waiting would be wiped anyway, so drop it now
+            pending.clear();
+            pendingClear = true;
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Starts the frame timer unless a flush is already on its way. Must be called holding lock.
+     * If the window is still starting, the startup thread starts the timer once it is ready.
+     */
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            if (flushTimer != null) {
+                flushTimer.restart();
+            }
+        }
+    }
+
+    /**
+     * Writes everything added since the last flush into the document. Runs on the Swing event thread.
+     */
+    private void drain() {
+        List<Run> runs;
+        boolean clearFirst;
+        synchronized (lock) {
+            runs = pending;
+            pending = new ArrayList<>();
+            clearFirst = pendingClear;
+            pendingClear = false;
+            flushScheduled = false;
+        }
+        if (clearFirst) {
+            textPane.setText("");  // set panel's text to empty string to "reset it"
+        }
+        for (Run run : runs) {
+            try {
+                doc.insertString(doc.getLength(), run.text.toString(), styleFor(run.color)); // insert text at end the panel
+            } catch (BadLocationException e) {
+                // can't happen when inserting at the end of the document
+            }
+        }
+    }
+
+    /**
+     * Each color gets its own style, made the first time the color is used.
+     */
+    private Style styleFor(Color color) {
+        Style style = styles.get(color);
+        if (style == null) {
+            style = doc.addStyle("color " + color.getRGB(), null); // add a custom style to the doc
+            StyleConstants.setFontSize(style, 25); // apply font size to custom style
+            StyleConstants.setForeground(style, color); // apply color to custom style
+            styles.put(color, style);
+        }
+        return style;
+    }
+
+    /**
+     * A piece of text waiting to be written, all in one color.
+     */
+    private static class Run {
+        private final StringBuilder text;
+        private final Color color;
+
+        Run(String text, Color color) {
+            this.text = new StringBuilder(text);
+            this.color = color;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,342 @@
+/**
+ * PackedState plays the game on states packed into a single long, for look-ahead search and undo.<p>
+ * A GameState is a web of mutable objects (the Hunter, the Town, its Shop), so trying a move out means
+ * copying all of them first. Here a whole game in progress is one long, laid out like the Solver's states:
+ * <pre>
+ *   bit 0        town dug
+ *   bit 1        town searched
+ *   bit 2        tough town
+ *   bits 3-4     what searching turns up (dust, crown, trophy, gem)
+ *   bits 5-7     terrain
+ *   bits 8-10    treasures found
+ *   bits 11-18   kit
+ *   bit 19       bankrupt
+ *   bits 32-63   gold
+ * </pre>
+ * step() never changes a state, it returns the state after the action, so branching is just keeping the
+ * old long and undo is going back to it. Nothing is allocated, so a search can branch as often as it likes
+ * without making any garbage.<p>
+ * Everything that stays the same for the whole game -- the prices, the chances, whether the hunter is a
+ * samurai -- is held by the PackedState object instead of in every state. The random numbers are passed in
+ * to each step and are drawn in exactly the order GameEngine and Town draw them, so a PackedState given the
+ * same random numbers as a GameState plays out the same game. The news isn't kept, as it doesn't change what
+ * can happen next, and on a World map a move is treated as reaching a brand new town.
+ */
+
+public class PackedState {
+    private static final int DUG = 1;
+    private static final int SEARCHED = 1 << 1;
+    private static final int TOUGH = 1 << 2;
+    private static final int FIND_SHIFT = 3;
+    private static final int TERRAIN_SHIFT = 5;
+    private static final int TREASURE_SHIFT = 8;
+    private static final int KIT_SHIFT = 11;
+    private static final int BANKRUPT = 1 << 19;
+    private static final int GOLD_SHIFT = 32;
+    // the bits that describe the town, cleared on arriving in a new one
+    private static final long TOWN_BITS = (1L << TREASURE_SHIFT) - 1;
+    private static final Action.Type[] TYPES = Action.Type.values();
+    private static final int TERRAINS = Terrain.count();
+
+    // instance variables
+    private final DifficultyProfile profile;
+    private final boolean samurai;
+    private final int[] buyPrices;
+    private final int[] sellPrices;
+    private final int stockedMask;
+
+    /**
+     * @param profile The numbers for the difficulty being played.
+     */
+    public PackedState(DifficultyProfile profile) {
+        this.profile = profile;
+        samurai = profile.getDifficulty().isSamuraiMode();
+        PriceTable prices = profile.getPrices();
+        Item[] items = Item.values();
+        buyPrices = new int[items.length];
+        sellPrices = new int[items.length];
+        int stocked = 0;
+        for (Item item : items) {
+            buyPrices[item.ordinal()] = prices.buyPrice(item, samurai);
+            sellPrices[item.ordinal()] = prices.sellPrice(item);
+            if (prices.isStocked(item, samurai)) {
+                stocked |= item.bit();
+            }
+        }
+        stockedMask = stocked;
+    }
+
+    public DifficultyProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Starts a new game: a new hunter in their first town.
+     * Draws the same random numbers as the GameState constructor, so the same seed gives the same first town.
+     *
+     * @param random The game's random numbers.
+     * @return The packed state.
+     */
+    public long start(RandomSource random) {
+        int kit = 0;
+        if (profile.getDifficulty() == Difficulty.TEST) {
+            // the test mode starts out with everything needed to cross any terrain
+            kit = Item.WATER.bit() | Item.ROPE.bit() | Item.MACHETE.bit() | Item.HORSE.bit() | Item.BOAT.bit()
+                    | Item.BOOTS.bit();
+        }
+        long state = withGold((long) kit << KIT_SHIFT, profile.getStartingGold() - (kit == 0 ? 0 : 6));
+        return newTown(state, random);
+    }
+
+    /**
+     * Packs a game in progress.
+     *
+     * @param game The game.
+     * @return The packed state.
+     */
+    public long of(GameState game) {
+        Hunter hunter = game.getHunter();
+        Town town = game.getTown();
+        long state = withGold(0, hunter.getGold());
+        state |= (long) hunter.getKitMask() << KIT_SHIFT;
+        state |= (long) hunter.getTreasureMask() << TREASURE_SHIFT;
+        state |= town.getTerrainIndex() << TERRAIN_SHIFT;
+        state |= town.getFindIndex() << FIND_SHIFT;
+        if (hunter.getBankruptcy()) {
+            state |= BANKRUPT;
+        }
+        if (town.isToughTown()) {
+            state |= TOUGH;
+        }
+        if (town.getSearched()) {
+            state |= SEARCHED;
+        }
+        if (town.getTownDug()) {
+            state |= DUG;
+        }
+        return state;
+    }
+
+    /**
+     * Works out the state after an action. The state passed in is left as it was.
+     *
+     * @param state The state before the action.
+     * @param action The action.
+     * @param random Where the action's random numbers come from.
+     * @return The state after the action.
+     */
+    public long step(long state, Action action, RandomSource random) {
+        return step(state, action.encode(), random);
+    }
+
+    /**
+     * Works out the state after an action packed by Action.encode(), so a search can keep its moves as ints.
+     *
+     * @param state The state before the action.
+     * @param code The packed action.
+     * @param random Where the action's random numbers come from.
+     * @return The state after the action.
+     */
+    public long step(long state, int code, RandomSource random) {
+        int itemCode = code >>> 4;
+        Item item = itemCode == 0 ? null : Item.fromOrdinal(itemCode - 1);
+        boolean confirmed = (code & (1 << 3)) != 0;
+        switch (TYPES[code & 7]) {
+            case BUY:
+                return confirmed ? buy(state, item) : state;
+            case SELL:
+                return confirmed ? sell(state, item) : state;
+            case MOVE:
+                return move(state, random);
+            case BRAWL:
+                return brawl(state, random);
+            case HUNT:
+                return hunt(state);
+            case DIG:
+                return dig(state, random);
+            default:
+                // exploring only tells the player something, and quitting is up to the caller
+                return state;
+        }
+    }
+
+    /**
+     * @param state The packed state.
+     * @return WON once all three treasures are found, LOST if the hunter went bankrupt, otherwise PLAYING.
+     */
+    public static Outcome.Status status(long state) {
+        if ((state & BANKRUPT) != 0) {
+            return Outcome.Status.LOST;
+        }
+        if (treasureMask(state) == Treasure.ALL) {
+            return Outcome.Status.WON;
+        }
+        return Outcome.Status.PLAYING;
+    }
+
+    // accessors
+    public static int gold(long state) {
+        return (int) (state >> GOLD_SHIFT);
+    }
+
+    public static int kitMask(long state) {
+        return (int) (state >>> KIT_SHIFT) & 0xFF;
+    }
+
+    public static boolean hasItem(long state, Item item) {
+        return (kitMask(state) & item.bit()) != 0;
+    }
+
+    public static int treasureMask(long state) {
+        return (int) (state >>> TREASURE_SHIFT) & Treasure.ALL;
+    }
+
+    public static Terrain terrain(long state) {
+        return Terrain.get((int) (state >>> TERRAIN_SHIFT) & 7);
+    }
+
+    public static boolean isToughTown(long state) {
+        return (state & TOUGH) != 0;
+    }
+
+    public static boolean isSearched(long state) {
+        return (state & SEARCHED) != 0;
+    }
+
+    public static boolean isDug(long state) {
+        return (state & DUG) != 0;
+    }
+
+    /**
+     * @param item The item.
+     * @return What the item costs the hunter, or 0 if it isn't for sale to them.
+     */
+    public int buyPrice(Item item) {
+        return buyPrices[item.ordinal()];
+    }
+
+    /**
+     * @param state The packed state.
+     * @return true if the hunter has something that crosses the terrain around the town.
+     */
+    public static boolean canCross(long state) {
+        return (kitMask(state) & terrain(state).getCrossingMask()) != 0;
+    }
+
+    private static long withGold(long state, int gold) {
+        return (state & 0xFFFFFFFFL) | (long) gold << GOLD_SHIFT;
+    }
+
+    private static long withItem(long state, Item item) {
+        return state | (long) item.bit() << KIT_SHIFT;
+    }
+
+    private static long changeGold(long state, int change) {
+        int gold = gold(state) + change;
+        state = withGold(state, gold);
+        return gold < 0 ? state | BANKRUPT : state;
+    }
+
+    /**
+     * The same rules as Shop.buy() and Hunter.buyItem(): anyone with a sword scares the shopkeeper into
+     * giving them boots, and a samurai with a sword gets everything else free too.
+     */
+    private long buy(long state, Item item) {
+        if (item == null || (stockedMask & item.bit()) == 0) {
+            return state;
+        }
+        boolean hasSword = hasItem(state, Item.SWORD);
+        if (hasSword && item == Item.BOOTS) {
+            return withItem(state, item);
+        }
+        int cost = buyPrices[item.ordinal()];
+        if ((cost == 0 && item != Item.SWORD) || gold(state) < cost || hasItem(state, item)) {
+            return state;
+        }
+        if (samurai && hasSword) {
+            return withItem(state, item);
+        }
+        return withItem(withGold(state, gold(state) - cost), item);
+    }
+
+    private long sell(long state, Item item) {
+        int price = item == null ? 0 : sellPrices[item.ordinal()];
+        if (price <= 0 || !hasItem(state, item)) {
+            return state;
+        }
+        return withGold(state, gold(state) + price) & ~((long) item.bit() << KIT_SHIFT);
+    }
+
+    /**
+     * Crossing uses up an alternative item first, which may break, then the hunter arrives in a new town.
+     */
+    private long move(long state, RandomSource random) {
+        if (!canCross(state)) {
+            return state;
+        }
+        Item used = terrain(state).itemUsedBy(kitMask(state));
+        double breakChance = profile.getBreakChance();
+        if (breakChance != 0 && random.nextDouble() < breakChance) {
+            state &= ~((long) used.bit() << KIT_SHIFT);
+        }
+        return newTown(state, random);
+    }
+
+    /**
+     * Builds a new town the way the Town constructor does: the terrain, then toughness, then what it hides.
+     */
+    private long newTown(long state, RandomSource random) {
+        double rnd = random.nextDouble();
+        int terrain = TERRAINS - 1;
+        for (int i = 0; i < TERRAINS - 1; i++) {
+            if (rnd < (i + 1) * (1.0 / TERRAINS)) {
+                terrain = i;
+                break;
+            }
+        }
+        boolean tough = random.nextDouble() < profile.getToughness();
+        int find = profile.findFor(random.nextDouble());
+        state &= ~TOWN_BITS;
+        state |= terrain << TERRAIN_SHIFT | find << FIND_SHIFT;
+        return tough ? state | TOUGH : state;
+    }
+
+    private long brawl(long state, RandomSource random) {
+        double noTroubleChance = profile.getTroubleChance(isToughTown(state));
+        if (random.nextDouble() > noTroubleChance) {
+            return state;
+        }
+        int goldDiff = (int) (random.nextDouble() * profile.getBrawlGold()) + 1;
+        if (hasItem(state, Item.SWORD)) {
+            // the other side gives up straight away, and nobody's gold changes hands
+            return state;
+        }
+        if (random.nextDouble() > noTroubleChance) {
+            return changeGold(state, goldDiff);
+        }
+        return changeGold(state, -goldDiff);
+    }
+
+    private static long hunt(long state) {
+        if (isSearched(state)) {
+            return state;
+        }
+        state |= SEARCHED;
+        int find = (int) (state >>> FIND_SHIFT) & 3;
+        if (find == 0) {
+            return state;
+        }
+        // finds 1 to 3 are the treasures in order; finding one twice changes nothing
+        return state | 1L << (TREASURE_SHIFT + find - 1);
+    }
+
+    private long dig(long state, RandomSource random) {
+        if (!hasItem(state, Item.SHOVEL) || isDug(state)) {
+            return state;
+        }
+        if (random.nextDouble() > 1 - profile.getDigChance()) {
+            state = changeGold(state, random.nextInt(profile.getDigGold() + 1));
+        }
+        return state | DUG;
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The PriceTable holds what every item costs to buy and what the shop pays to buy it back.<p>
+ * Prices are worked out once, when the table is made, and stored in arrays indexed by the Item's ordinal,
+ * so looking up a price is just an array read. The catalogue text shown in the shop is built once too.<p>
+ * Shops with the same markdown share one table. A table can also be loaded from a catalogue file with one
+ * "item=price" line per item, listed in the order they should be shown. An item priced at 0 is only sold
+ * to samurai (that's how the sword works). The standard prices are the ones in DifficultyProfile.Setting.
+ */
+
+public class PriceTable {
+    private static final ConcurrentHashMap<Double, PriceTable> SHARED = new ConcurrentHashMap<>();
+
+    // instance variables
+    private final int[] buyPrices;
+    private final int[] sellPrices;
+    private final boolean[] stocked;
+    private final Item[] listed; // in catalogue order, samurai-only items last
+    private final String catalogue;
+    private final String samuraiCatalogue;
+
+    /**
+     * Builds a table from catalogue lines.
+     *
+     * @param lines Lines of the form "item=price". Blank lines and lines starting with # are skipped.
+     * @param markdown Percentage of the price the shop pays when buying an item back, in decimal format.
+     */
+    public PriceTable(List<String> lines, double markdown) {
+        int itemCount = Item.values().length;
+        buyPrices = new int[itemCount];
+        sellPrices = new int[itemCount];
+        stocked = new boolean[itemCount];
+        StringBuilder str = new StringBuilder("\n");
+        StringBuilder samuraiOnly = new StringBuilder();
+        List<Item> forEveryone = new ArrayList<>();
+        List<Item> forSamurai = new ArrayList<>();
+
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int equals = line.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Catalogue line should look like item=price: " + line);
+            }
+            String name = line.substring(0, equals).trim().toLowerCase();
+            Item item = Item.fromName(name);
+            if (item == null) {
+                throw new IllegalArgumentException("Unknown item in catalogue: " + name);
+            }
+            int price = Integer.parseInt(line.substring(equals + 1).trim());
+
+            buyPrices[item.ordinal()] = price;
+            sellPrices[item.ordinal()] = (int) (price * markdown);
+            stocked[item.ordinal()] = true;
+            String entry = Character.toUpperCase(name.charAt(0)) + name.substring(1) + ": " + price + " gold\n";
+            if (price == 0) {
+                samuraiOnly.append(entry);
+                forSamurai.add(item);
+            } else {
+                str.append(entry);
+                forEveryone.add(item);
+            }
+        }
+        forEveryone.addAll(forSamurai);
+        listed = forEveryone.toArray(new Item[0]);
+        catalogue = str.toString();
+        samuraiCatalogue = catalogue + samuraiOnly;
+    }
+
+    /**
+     * Builds a table that lists every item, in the order they are declared.
+     *
+     * @param prices The price of each item, indexed by the Item's ordinal.
+     * @param markdown Percentage of the price the shop pays when buying an item back, in decimal format.
+     */
+    public PriceTable(int[] prices, double markdown) {
+        this(catalogueLines(prices), markdown);
+    }
+
+    private static List<String> catalogueLines(int[] prices) {
+        List<String> lines = new ArrayList<>();
+        for (Item item : Item.values()) {
+            lines.add(item.getName() + "=" + prices[item.ordinal()]);
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the standard price table for the given markdown, shared by every shop that uses that markdown.
+     *
+     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @return The shared PriceTable.
+     */
+    public static PriceTable forMarkdown(double markdown) {
+        return SHARED.computeIfAbsent(markdown, m -> {
+            int[] prices = new int[Item.values().length];
+            for (Item item : Item.values()) {
+                prices[item.ordinal()] = (int) DifficultyProfile.Setting.priceOf(item).getStandard();
+            }
+            return new PriceTable(prices, m);
+        });
+    }
+
+    /**
+     * Loads a custom catalogue from a file.
+     *
+     * @param file The catalogue file.
+     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @return The new PriceTable.
+     * @throws IOException if the file can't be read.
+     */
+    public static PriceTable load(Path file, double markdown) throws IOException {
+        return new PriceTable(Files.readAllLines(file), markdown);
+    }
+
+    /**
+     * @param item The item being bought.
+     * @param samurai Whether the customer is a samurai.
+     * @return The cost of the item, or 0 if it isn't for sale to this customer.
+     */
+    public int buyPrice(Item item, boolean samurai) {
+        int price = buyPrices[item.ordinal()];
+        if (price == 0 && !samurai) {
+            return 0;
+        }
+        return price;
+    }
+
+    /**
+     * @param item The item being sold.
+     * @return What the shop pays for the item, or 0 if the shop doesn't deal in it.
+     */
+    public int sellPrice(Item item) {
+        return sellPrices[item.ordinal()];
+    }
+
+    /**
+     * @param item The item asked for.
+     * @param samurai Whether the customer is a samurai.
+     * @return true if the shop sells the item to this customer.
+     */
+    public boolean isStocked(Item item, boolean samurai) {
+        return stocked[item.ordinal()] && (samurai || buyPrices[item.ordinal()] != 0);
+    }
+
+    /**
+     * @return The items in the catalogue, in the order they are shown, with the samurai-only ones last.
+     */
+    public Item[] getListed() {
+        return listed.clone();
+    }
+
+    /**
+     * @param samurai Whether the customer is a samurai.
+     * @return The list of items and prices, one per line.
+     */
+    public String catalogue(boolean samurai) {
+        return samurai ? samuraiCatalogue : catalogue;
+    }
+}
@@ -0,0 +1,462 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The QLearner teaches itself to play by Q-learning over millions of games against the real GameEngine.<p>
+ * Unlike the Solver it doesn't need to know the rules: it only sees a small summary of each situation and
+ * learns, from what happens, how good each menu choice is there. The summary packs into an int (a state id):
+ * <pre>
+ *   bit 0        town searched
+ *   bit 1        town dug
+ *   bit 2        tough town
+ *   bits 3-5     terrain
+ *   bit 6        the hunter can cross the terrain
+ *   bit 7        has a shovel
+ *   bit 8        has a sword
+ *   bits 9-10    treasures found
+ *   bits 11-12   mode (easy, normal, hard, samurai; test plays like normal)
+ *   bits 13-16   gold, in buckets of 2 up to 16 and of 8 above that
+ * </pre>
+ * The choices are the menu moves: hunt, dig, brawl, move, or buy the item that crosses the terrain, a shovel
+ * or a sword. Only the choices that can change something are considered (see legalActions()). The value of
+ * every choice in every state is one float in a primitive table.<p>
+ * Training runs on all cores. Each thread plays games against its own copy of the table and notes which
+ * states it changed; every MERGE_EPISODES games it adds its share of those changes into the shared table with
+ * a compare-and-set per entry and takes back what the other threads have learned there. No locks are taken,
+ * and threads only meet on the few entries they both changed.<p>
+ * A trained table can be saved and loaded again, and a QLearner is a BotPolicy, so it can play games
+ * (BatchRunner) or suggest moves to a player (TreasureHunter.giveHints()).<p>
+ *
+ * Usage: java QLearner [episodes] [tableFile] [seed]
+ */
+
+public class QLearner implements BotPolicy {
+    public static final int MAGIC = 0x54485131; // "THQ1"
+
+    // the choices, as stored in the table
+    public static final int HUNT = 0;
+    public static final int DIG = 1;
+    public static final int BRAWL = 2;
+    public static final int MOVE = 3;
+    public static final int BUY_CROSSING = 4;
+    public static final int BUY_SHOVEL = 5;
+    public static final int BUY_SWORD = 6;
+    public static final int ACTIONS = 7;
+
+    public static final int STATE_BITS = 17;
+    public static final int STATES = 1 << STATE_BITS;
+
+    private static final int MODE_SHIFT = 11;
+    private static final int GOLD_SHIFT = 13;
+    private static final int MAX_GOLD_BUCKET = 15;
+
+    // learning settings
+    private static final double START_ALPHA = 0.3;
+    private static final double END_ALPHA = 0.01;
+    private static final float STEP_REWARD = -1;
+    private static final float LOSS_REWARD = -200;
+    private static final double START_EPSILON = 0.3;
+    private static final double END_EPSILON = 0.02;
+    private static final int MERGE_EPISODES = 1000;
+    private static final int REFRESH_MERGES = 16; // a thread takes a fresh copy of the whole table this often
+    private static final int MAX_TURNS = 1000;
+
+    private static final VarHandle ENTRY = MethodHandles.arrayElementVarHandle(float[].class);
+
+    // instance variables
+    private final float[] table; // table[state * ACTIONS + action]
+
+    /**
+     * Makes an untrained learner; every choice starts out worth 0, which is more than any of them will turn out
+     * to be, so the learner tries everything before settling on what works.
+     */
+    public QLearner() {
+        this(new float[STATES * ACTIONS]);
+    }
+
+    private QLearner(float[] table) {
+        this.table = table;
+    }
+
+    /**
+     * @param state The game being played.
+     * @return The state id summarizing it.
+     */
+    public static int stateOf(GameState state) {
+        Hunter hunter = state.getHunter();
+        Town town = state.getTown();
+        int id = 0;
+        if (town.getSearched()) {
+            id |= 1;
+        }
+        if (town.getTownDug()) {
+            id |= 1 << 1;
+        }
+        if (town.isToughTown()) {
+            id |= 1 << 2;
+        }
+        id |= town.getTerrainIndex() << 3;
+        if (town.getTerrain().canCrossTerrain(hunter)) {
+            id |= 1 << 6;
+        }
+        if (hunter.hasItem(Item.SHOVEL)) {
+            id |= 1 << 7;
+        }
+        if (hunter.hasItem(Item.SWORD)) {
+            id |= 1 << 8;
+        }
+        id |= Math.min(Integer.bitCount(hunter.getTreasureMask()), 3) << 9;
+        id |= modeOf(state.getDifficulty()) << MODE_SHIFT;
+        return id | goldBucket(hunter.getGold()) << GOLD_SHIFT;
+    }
+
+    private static int modeOf(Difficulty difficulty) {
+        switch (difficulty) {
+            case EASY:
+                return 0;
+            case HARD:
+                return 2;
+            case SAMURAI:
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
+    private static int goldBucket(int gold) {
+        if (gold < 16) {
+            return Math.max(gold, 0) >> 1;
+        }
+        return Math.min(8 + ((gold - 16) >> 3), MAX_GOLD_BUCKET);
+    }
+
+    /**
+     * Works out which choices could change anything right now. Hunting a searched town, buying what the shop
+     * won't sell or can't be afforded, and so on, leave the game exactly as it was, so they are never tried.
+     *
+     * @param state The game being played.
+     * @return A bit for each choice that can be made.
+     */
+    public static int legalActions(GameState state) {
+        Hunter hunter = state.getHunter();
+        Town town = state.getTown();
+        Shop shop = state.getShop();
+        boolean hasSword = hunter.hasItem(Item.SWORD);
+        int legal = 0;
+        if (!town.getSearched()) {
+            legal |= 1 << HUNT;
+        }
+        if (hunter.hasItem(Item.SHOVEL) && !town.getTownDug()) {
+            legal |= 1 << DIG;
+        }
+        if (!hasSword && goldBucket(hunter.getGold()) < MAX_GOLD_BUCKET) {
+            // a brawler surrenders to a sword without handing over any gold, and in the top gold bucket the
+            // hunter can already afford anything and more gold wouldn't show in the state
+            legal |= 1 << BRAWL;
+        }
+        Terrain terrain = town.getTerrain();
+        if (terrain.canCrossTerrain(hunter)) {
+            legal |= 1 << MOVE;
+        } else if (canBuy(hunter, shop, town, terrain.getRequiredItem(), hasSword)) {
+            legal |= 1 << BUY_CROSSING;
+        }
+        if (!hunter.hasItem(Item.SHOVEL) && canBuy(hunter, shop, town, Item.SHOVEL, hasSword)) {
+            legal |= 1 << BUY_SHOVEL;
+        }
+        if (!hasSword && hunter.getHunterSamuraiMode()) {
+            legal |= 1 << BUY_SWORD;
+        }
+        return legal == 0 ? 1 << BRAWL : legal;
+    }
+
+    private static boolean canBuy(Hunter hunter, Shop shop, Town town, Item item, boolean hasSword) {
+        if (hasSword && item == Item.BOOTS) {
+            return true; // the shopkeeper hands them over
+        }
+        int cost = shop.quote(item, hunter.getHunterSamuraiMode(), town.getTerrainIndex());
+        return cost > 0 && hunter.getGold() >= cost;
+    }
+
+    /**
+     * @param state A state id.
+     * @param legal The choices that can be made, from legalActions().
+     * @return The choice the table rates best there.
+     */
+    public int bestAction(int state, int legal) {
+        return bestAction(table, state, legal);
+    }
+
+    private static int bestAction(float[] table, int state, int legal) {
+        int base = state * ACTIONS;
+        int best = Integer.numberOfTrailingZeros(legal);
+        for (int a = best + 1; a < ACTIONS; a++) {
+            if ((legal & (1 << a)) != 0 && table[base + a] > table[base + best]) {
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param state A state id.
+     * @param action A choice.
+     * @return What the table thinks the choice is worth: minus the turns it expects to take, and more if it
+     * expects to lose.
+     */
+    public float value(int state, int action) {
+        return table[state * ACTIONS + action];
+    }
+
+    /**
+     * @param action One of the choices.
+     * @param state The game it is for.
+     * @return The Action the game understands.
+     */
+    public static Action toAction(int action, GameState state) {
+        switch (action) {
+            case HUNT:
+                return Action.hunt();
+            case DIG:
+                return Action.dig();
+            case BRAWL:
+                return Action.brawl();
+            case MOVE:
+                return Action.move();
+            case BUY_CROSSING:
+                return Action.buy(state.getTown().getTerrain().getNeededItem(), true);
+            case BUY_SHOVEL:
+                return Action.buy("shovel", true);
+            default:
+                return Action.buy("sword", true);
+        }
+    }
+
+    @Override
+    public Action chooseAction(GameState state) {
+        return toAction(bestAction(stateOf(state), legalActions(state)), state);
+    }
+
+    /**
+     * Plays the given number of games on all cores, learning from every move.
+     * The modes take turns, so the table learns all of them at once.
+     *
+     * @param episodes How many games to play.
+     * @param seed The seed the games and the exploring are worked out from.
+     * @param progress Called now and then from one of the training threads with the number of games played so far.
+     * @return How many moves were made.
+     */
+    public long train(long episodes, long seed, LongConsumer progress) {
+        AtomicLong claimed = new AtomicLong();
+        LongAdder steps = new LongAdder();
+        int workers = ForkJoinPool.getCommonPoolParallelism() + 1; // the calling thread works too
+        IntStream.range(0, workers).parallel().forEach(worker ->
+                new Worker(episodes, claimed, 1f / workers, SplittableRandomSource.seedFor(seed, worker)).run(steps, progress));
+        return steps.sum();
+    }
+
+    /**
+     * One training thread, with its own copy of the table.
+     */
+    private class Worker {
+        private final long episodes;
+        private final AtomicLong claimed;
+        private final float share;
+        private final SplittableRandom random;
+        private final float[] local = table.clone();
+        private final float[] base = local.clone(); // what the shared table held when local was last synced
+        private final long[] dirty = new long[STATES / 64];
+        private int[] changed = new int[1024];
+        private int changedCount;
+
+        Worker(long episodes, AtomicLong claimed, float share, long seed) {
+            this.episodes = episodes;
+            this.claimed = claimed;
+            this.share = share;
+            random = new SplittableRandom(seed);
+        }
+
+        void run(LongAdder steps, LongConsumer progress) {
+            GameEngine engine = new GameEngine();
+            Difficulty[] modes = {Difficulty.EASY, Difficulty.NORMAL, Difficulty.HARD, Difficulty.SAMURAI};
+            int merges = 0;
+            long first;
+            while ((first = claimed.getAndAdd(MERGE_EPISODES)) < episodes) {
+                long last = Math.min(first + MERGE_EPISODES, episodes);
+                // explore less and learn more gently as training goes on, so the values settle down by the end
+                double done = (double) first / episodes;
+                double epsilon = START_EPSILON + (END_EPSILON - START_EPSILON) * done;
+                float alpha = (float) (START_ALPHA + (END_ALPHA - START_ALPHA) * done);
+                long moves = 0;
+                for (long episode = first; episode < last; episode++) {
+                    GameState game = new GameState("bot", modes[(int) (episode & 3)], random.nextLong());
+                    moves += playEpisode(engine, game, epsilon, alpha);
+                }
+                steps.add(moves);
+                merge(++merges % REFRESH_MERGES == 0);
+                if (progress != null && (first / MERGE_EPISODES) % 100 == 0) {
+                    progress.accept(last);
+                }
+            }
+            merge(false);
+        }
+
+        /**
+         * Plays one game, choosing at random epsilon of the time, and updates the local table after every move.
+         */
+        private int playEpisode(GameEngine engine, GameState game, double epsilon, float alpha) {
+            int state = stateOf(game);
+            int legal = legalActions(game);
+            for (int turn = 1; turn <= MAX_TURNS; turn++) {
+                int action = random.nextDouble() < epsilon ? randomAction(legal) : bestAction(local, state, legal);
+                Outcome.Status status = engine.step(game, toAction(action, game)).getStatus();
+                float target;
+                int next = -1;
+                if (status == Outcome.Status.WON) {
+                    target = STEP_REWARD;
+                } else if (status == Outcome.Status.LOST) {
+                    target = STEP_REWARD + LOSS_REWARD;
+                } else {
+                    next = stateOf(game);
+                    legal = legalActions(game);
+                    target = STEP_REWARD + local[next * ACTIONS + bestAction(local, next, legal)];
+                }
+                int entry = state * ACTIONS + action;
+                local[entry] += alpha * (target - local[entry]);
+                markDirty(state);
+                if (next < 0) {
+                    return turn;
+                }
+                state = next;
+            }
+            return MAX_TURNS;
+        }
+
+        private int randomAction(int legal) {
+            int pick = random.nextInt(Integer.bitCount(legal));
+            while (pick-- > 0) {
+                legal &= legal - 1;
+            }
+            return Integer.numberOfTrailingZeros(legal);
+        }
+
+        private void markDirty(int state) {
+            long bit = 1L << state;
+            if ((dirty[state >>> 6] & bit) == 0) {
+                dirty[state >>> 6] |= bit;
+                if (changedCount == changed.length) {
+                    changed = Arrays.copyOf(changed, changedCount * 2);
+                }
+                changed[changedCount++] = state;
+            }
+        }
+
+        /**
+         * Adds what this thread learned since the last merge into the shared table, and takes back the
+         * shared values for those states. With refresh, the whole local table is brought up to date as well.
+         */
+        private void merge(boolean refresh) {
+            for (int i = 0; i < changedCount; i++) {
+                int state = changed[i];
+                dirty[state >>> 6] = 0;
+                for (int entry = state * ACTIONS; entry < (state + 1) * ACTIONS; entry++) {
+                    // every thread is learning the same values, so each one's change only counts for its share;
+                    // adding them up in full would overshoot by the number of threads
+                    float delta = (local[entry] - base[entry]) * share;
+                    float shared;
+                    if (delta == 0) {
+                        shared = (float) ENTRY.getVolatile(table, entry);
+                    } else {
+                        float old;
+                        do {
+                            old = (float) ENTRY.getVolatile(table, entry);
+                            shared = old + delta;
+                        } while (!ENTRY.compareAndSet(table, entry, old, shared));
+                    }
+                    local[entry] = shared;
+                    base[entry] = shared;
+                }
+            }
+            changedCount = 0;
+            if (refresh) {
+                // plain reads are fine here: a float is always read whole, and a value a moment old does no harm
+                System.arraycopy(table, 0, local, 0, table.length);
+                System.arraycopy(table, 0, base, 0, table.length);
+            }
+        }
+    }
+
+    /**
+     * Writes the table to a file: a header ("THQ1", state bits, actions) then one float per entry.
+     *
+     * @param file The file to write.
+     * @throws IOException if the file can't be written.
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(STATE_BITS);
+            out.writeByte(ACTIONS);
+            for (float value : table) {
+                out.writeFloat(value);
+            }
+        }
+    }
+
+    /**
+     * Reads a table written by save().
+     *
+     * @param file The file to read.
+     * @return A QLearner with the saved table.
+     * @throws IOException if the file can't be read or wasn't written by this version of the QLearner.
+     */
+    public static QLearner load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != STATE_BITS || in.readByte() != ACTIONS) {
+                throw new IOException(file + " is not a table this QLearner can read");
+            }
+            float[] table = new float[STATES * ACTIONS];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = in.readFloat();
+            }
+            return new QLearner(table);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long episodes = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000;
+        Path file = Path.of(args.length > 1 ? args[1] : "qtable.thq");
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : SplittableRandomSource.randomSeed();
+
+        QLearner learner = new QLearner();
+        System.out.println("Training on " + episodes + " games with " + (ForkJoinPool.getCommonPoolParallelism() + 1)
+                + " threads, seed " + seed);
+        long start = System.nanoTime();
+        long steps = learner.train(episodes, seed, played -> System.out.printf("  %d games, %.1fs%n",
+                played, (System.nanoTime() - start) / 1e9));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Trained in %.1fs: %d moves (%.2f million moves/s)%n", seconds, steps, steps / seconds / 1e6);
+        learner.save(file);
+        System.out.println("Table written to " + file);
+
+        BatchRunner runner = new BatchRunner(ForkJoinPool.commonPool(), learner, MAX_TURNS, seed);
+        BatchRunner greedy = new BatchRunner(ForkJoinPool.commonPool(), new GreedyBot(), MAX_TURNS, seed);
+        for (Difficulty difficulty : new Difficulty[] {Difficulty.EASY, Difficulty.NORMAL, Difficulty.HARD, Difficulty.SAMURAI}) {
+            System.out.println(runner.run(difficulty, 20_000).report(difficulty.name())
+                    + String.format(" (GreedyBot win=%.2f%%)", 100 * greedy.run(difficulty, 20_000).getWinRate()));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A CommandSource fed by another thread: lines are added with offer() and the game takes them in order,
+ * waiting when the queue is empty. Calling close() lets the game finish once the queue is drained.
+ */
+
+public class QueueCommandSource implements CommandSource {
+    // marks the end of the queue; compared by reference, so no real line can be mistaken for it
+    private static final String END = new String("");
+
+    // instance variables
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private String nextLine;
+
+    /**
+     * Adds a line for the game to read.
+     *
+     * @param line The line to add.
+     */
+    public void offer(String line) {
+        queue.add(line);
+    }
+
+    /**
+     * Says no more lines are coming.
+     */
+    public void close() {
+        queue.add(END);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextLine == null) {
+            try {
+                nextLine = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                nextLine = END;
+            }
+        }
+        return nextLine != END;
+    }
+
+    @Override
+    public String nextLine() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Queue closed");
+        }
+        String line = nextLine;
+        nextLine = null;
+        return line;
+    }
+}
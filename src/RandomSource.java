@@ -0,0 +1,19 @@
+/**
+ * A RandomSource supplies the random numbers for one game.<p>
+ * Every game gets its own source, so games running on different threads never share a generator,
+ * and a game started from the same seed always plays out the same way.
+ */
+
+public interface RandomSource {
+
+    /**
+     * @return A random number from 0 (inclusive) to 1 (exclusive), the same range as Math.random().
+     */
+    double nextDouble();
+
+    /**
+     * @param bound The upper limit (exclusive). Must be positive.
+     * @return A random whole number from 0 to bound - 1.
+     */
+    int nextInt(int bound);
+}
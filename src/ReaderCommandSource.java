@@ -0,0 +1,65 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * A CommandSource that reads lines from a stream, such as the keyboard or a network connection.
+ */
+
+public class ReaderCommandSource implements CommandSource {
+    // instance variables
+    private final BufferedReader reader;
+    private String nextLine;
+    private boolean finished;
+
+    /**
+     * @param in The stream to read from, in UTF-8.
+     */
+    public ReaderCommandSource(InputStream in) {
+        reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads with buffers of the given size instead of the usual 8K characters plus 8 KB of bytes, for when
+     * there are thousands of sources open at once. An InputStreamReader always takes the larger byte buffer,
+     * so the stream is read through a channel, whose reader can be given its size.
+     *
+     * @param in The stream to read from, in UTF-8.
+     * @param bufferSize How many characters, and how many bytes, to buffer. A line longer than this still
+     *                   reads correctly, just in more than one go.
+     */
+    public ReaderCommandSource(InputStream in, int bufferSize) {
+        reader = new BufferedReader(Channels.newReader(Channels.newChannel(in), StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), bufferSize), bufferSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextLine == null && !finished) {
+            try {
+                nextLine = reader.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finished = nextLine == null;
+        }
+        return !finished;
+    }
+
+    @Override
+    public String nextLine() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more input");
+        }
+        String line = nextLine;
+        nextLine = null;
+        return line;
+    }
+}
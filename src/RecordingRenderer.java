@@ -0,0 +1,52 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Renderer that keeps everything in memory so it can be checked afterwards, for example in a test.
+ */
+
+public class RecordingRenderer implements Renderer {
+    // instance variables
+    private final StringBuilder transcript = new StringBuilder();
+    private final StringBuilder screen = new StringBuilder();
+    private final List<TextColor> colors = new ArrayList<>();
+    private int clears;
+
+    @Override
+    public void print(String text, TextColor color) {
+        transcript.append(text);
+        screen.append(text);
+        colors.add(color);
+    }
+
+    @Override
+    public void clear() {
+        screen.setLength(0);
+        clears++;
+    }
+
+    /**
+     * @return Everything printed since the recording started, including text that was cleared.
+     */
+    public String getTranscript() {
+        return transcript.toString();
+    }
+
+    /**
+     * @return The text printed since the last clear, which is what a player would be looking at.
+     */
+    public String getScreen() {
+        return screen.toString();
+    }
+
+    /**
+     * @return The color of every print call, in order.
+     */
+    public List<TextColor> getColors() {
+        return colors;
+    }
+
+    public int getClears() {
+        return clears;
+    }
+}
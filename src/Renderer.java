@@ -0,0 +1,27 @@
+/**
+ * A Renderer is somewhere the game can show its text: a window, a terminal, nowhere at all, or a
+ * recording kept for checking later.
+ */
+
+public interface Renderer {
+
+    /**
+     * Adds text to the end of what is being shown.
+     *
+     * @param text The text to add.
+     * @param color The color to show it in.
+     */
+    void print(String text, TextColor color);
+
+    /**
+     * Wipes everything shown so far.
+     */
+    void clear();
+
+    /**
+     * Makes sure everything printed so far has reached the player. The game calls this before it waits for input,
+     * so renderers that send text somewhere slow can hold it back until then.
+     */
+    default void flush() {
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The ResultsReader works out totals over a file written by ResultsWriter, however big it is.<p>
+ * Opening the file reads only the block headers, to find where each block starts. aggregate() then hands
+ * the blocks out to all cores: each block is memory-mapped, inflated into a buffer the thread reuses, and
+ * passed to the caller's accumulator one block at a time, so memory use doesn't depend on the file size.<p>
+ *
+ * Usage: java ResultsReader [resultsFile]
+ */
+
+public class ResultsReader implements Closeable {
+    // instance variables
+    private final FileChannel channel;
+    private final int maxTurns;
+    private final long[] blockStarts;
+    private final int[] blockRows;
+    private final int[] blockLengths;
+    private final long games;
+    private final ThreadLocal<Block> buffers = ThreadLocal.withInitial(Block::new);
+
+    /**
+     * Opens a results file and finds its blocks.
+     *
+     * @param file The file written by ResultsWriter.
+     * @throws IOException if the file can't be read or isn't a results file.
+     */
+    public ResultsReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(ResultsWriter.HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt(0) != ResultsWriter.MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a results file");
+        }
+        maxTurns = header.getInt(4);
+
+        long[] starts = new long[64];
+        int[] rows = new int[64];
+        int[] lengths = new int[64];
+        int count = 0;
+        long total = 0;
+        long position = ResultsWriter.HEADER_SIZE;
+        long size = channel.size();
+        ByteBuffer blockHeader = ByteBuffer.allocate(ResultsWriter.BLOCK_HEADER_SIZE);
+        while (position + ResultsWriter.BLOCK_HEADER_SIZE <= size) {
+            blockHeader.clear();
+            readFully(blockHeader, position);
+            int blockRowCount = blockHeader.getInt(0);
+            int length = blockHeader.getInt(4);
+            if (blockRowCount <= 0 || position + ResultsWriter.BLOCK_HEADER_SIZE + length > size) {
+                break; // the end of a file that was still being written, or a run that crashed
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                rows = Arrays.copyOf(rows, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            starts[count] = position + ResultsWriter.BLOCK_HEADER_SIZE;
+            rows[count] = blockRowCount;
+            lengths[count] = length;
+            count++;
+            total += blockRowCount;
+            position += ResultsWriter.BLOCK_HEADER_SIZE + length;
+        }
+        blockStarts = Arrays.copyOf(starts, count);
+        blockRows = Arrays.copyOf(rows, count);
+        blockLengths = Arrays.copyOf(lengths, count);
+        games = total;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Results file ends in the middle of a header");
+            }
+            position += read;
+        }
+    }
+
+    // accessors
+    public long getGames() {
+        return games;
+    }
+
+    public int getBlockCount() {
+        return blockStarts.length;
+    }
+
+    public int getMaxTurns() {
+        return maxTurns;
+    }
+
+    /**
+     * Folds every game in the file into totals, using all cores.<p>
+     * Each thread makes its own totals with newTotals, adds whole blocks to them with add, and
+     * the totals are then merged pairwise with merge -- the same shape as Stream.collect().
+     *
+     * @param newTotals Makes an empty set of totals.
+     * @param add Adds one block of games to a set of totals. The Block is only valid during the call.
+     * @param merge Adds the second set of totals into the first.
+     * @return The totals for the whole file.
+     */
+    public <T> T aggregate(Supplier<T> newTotals, BiConsumer<T, Block> add, BiConsumer<T, T> merge) {
+        return IntStream.range(0, blockStarts.length).parallel()
+                .collect(newTotals, (totals, block) -> add.accept(totals, readBlock(block)), merge);
+    }
+
+    /**
+     * Maps one block and inflates it into this thread's buffer.
+     */
+    private Block readBlock(int index) {
+        Block block = buffers.get();
+        try {
+            ByteBuffer compressed = channel.map(FileChannel.MapMode.READ_ONLY, blockStarts[index], blockLengths[index]);
+            block.inflate(compressed, blockRows[index]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Block " + index + " is corrupt", e));
+        }
+        return block;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * One block of games, laid out column by column exactly as ResultsWriter packed them.
+     */
+    public static class Block {
+        // values() makes a new array on every call, which is too much for every row
+        private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+        private static final Outcome.Status[] STATUSES = Outcome.Status.values();
+
+        private final byte[] raw = new byte[ResultsWriter.BLOCK_ROWS * ResultsWriter.ROW_SIZE];
+        private final ByteBuffer columns = ByteBuffer.wrap(raw);
+        private final Inflater inflater = new Inflater();
+        private int rows;
+
+        void inflate(ByteBuffer compressed, int rowCount) throws DataFormatException {
+            inflater.reset();
+            inflater.setInput(compressed);
+            int length = rowCount * ResultsWriter.ROW_SIZE;
+            if (rowCount < 0 || length > raw.length) {
+                throw new DataFormatException("block has " + rowCount + " rows");
+            }
+            int done = 0;
+            while (done < length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, done, length - done);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("block is shorter than its header says");
+                }
+                done += inflated;
+            }
+            if (done != length) {
+                throw new DataFormatException("block ends after " + done + " of its " + length + " bytes");
+            }
+            rows = rowCount;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getSeed(int row) {
+            return columns.getLong(row * 8);
+        }
+
+        public Difficulty getDifficulty(int row) {
+            return DIFFICULTIES[raw[rows * 8 + row]];
+        }
+
+        public int getTurns(int row) {
+            return columns.getInt(rows * 9 + row * 4);
+        }
+
+        public int getGold(int row) {
+            return columns.getInt(rows * 13 + row * 4);
+        }
+
+        public int getTreasures(int row) {
+            return raw[rows * 17 + row];
+        }
+
+        public Outcome.Status getStatus(int row) {
+            return STATUSES[raw[rows * 18 + row]];
+        }
+    }
+
+    /**
+     * What main() adds up: the usual stats for each difficulty, plus the gold the hunters finished with.
+     */
+    private static class Totals {
+        private final SimulationStats[] stats;
+        private final long[] gold = new long[Difficulty.values().length];
+
+        Totals(int maxTurns) {
+            stats = new SimulationStats[Difficulty.values().length];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = new SimulationStats(maxTurns);
+            }
+        }
+
+        void add(Block block) {
+            for (int row = 0; row < block.getRows(); row++) {
+                Difficulty difficulty = block.getDifficulty(row);
+                stats[difficulty.ordinal()].record(block.getStatus(row), block.getTurns(row));
+                gold[difficulty.ordinal()] += block.getGold(row);
+            }
+        }
+
+        void merge(Totals other) {
+            for (int i = 0; i < stats.length; i++) {
+                stats[i].merge(other.stats[i]);
+                gold[i] += other.gold[i];
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Path.of(args.length > 0 ? args[0] : "results.thr");
+        try (ResultsReader reader = new ResultsReader(file)) {
+            long start = System.nanoTime();
+            Totals totals = reader.aggregate(() -> new Totals(reader.getMaxTurns()), Totals::add, Totals::merge);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(file + ": " + reader.getGames() + " games in " + reader.getBlockCount() + " blocks");
+            for (Difficulty difficulty : Difficulty.values()) {
+                SimulationStats stats = totals.stats[difficulty.ordinal()];
+                if (stats.getGames() > 0) {
+                    System.out.println(stats.report(difficulty.name())
+                            + String.format(" gold=%.1f", (double) totals.gold[difficulty.ordinal()] / stats.getGames()));
+                }
+            }
+            System.out.printf("Read in %.1fs (%.0f games/s)%n", seconds, reader.getGames() / seconds);
+        }
+    }
+}
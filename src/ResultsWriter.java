@@ -0,0 +1,173 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * The ResultsWriter streams one record per simulated game to a file, so a run of any size never keeps
+ * its games in memory.<p>
+ * The file is a header (MAGIC, then the maxTurns the games were played with) followed by blocks. Each block
+ * holds up to BLOCK_ROWS games stored column by column -- all the seeds, then all the modes, turns, final gold,
+ * treasure masks and end statuses -- and is deflated as a whole. A block starts with its row count and its
+ * compressed length, so a reader can hop from block to block without inflating anything.<p>
+ * Every thread that records games fills its own block, compresses it itself, then claims the next free
+ * stretch of the file with one atomic add and writes there. Threads never wait for each other, and the
+ * blocks of different threads can land in any order. ResultsReader reads the files back.
+ */
+
+public class ResultsWriter implements Closeable {
+    public static final int MAGIC = 0x54485231; // "THR1"
+    public static final int HEADER_SIZE = 8;
+    public static final int BLOCK_HEADER_SIZE = 8;
+    public static final int BLOCK_ROWS = 8192;
+    // seed, mode, turns, gold, treasures, end
+    public static final int ROW_SIZE = 8 + 1 + 4 + 4 + 1 + 1;
+
+    // instance variables
+    private final FileChannel channel;
+    private final AtomicLong nextBlock = new AtomicLong(HEADER_SIZE); // where the next block goes
+    private final AtomicLong games = new AtomicLong();
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(this::newBlock);
+    private final ConcurrentLinkedQueue<Block> allBlocks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates (or empties) the results file.
+     *
+     * @param file The file to write.
+     * @param maxTurns The turn limit the games are played with, stored for the reader.
+     * @throws IOException if the file can't be written.
+     */
+    public ResultsWriter(Path file, int maxTurns) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(maxTurns).flip();
+        writeFully(header, 0);
+    }
+
+    private Block newBlock() {
+        Block block = new Block();
+        allBlocks.add(block);
+        return block;
+    }
+
+    /**
+     * Records one finished game. Safe to call from any number of threads at once.
+     *
+     * @param seed The game's seed.
+     * @param difficulty The mode it was played on.
+     * @param turns How many actions it took.
+     * @param gold The hunter's gold at the end.
+     * @param treasures The hunter's treasure mask at the end.
+     * @param status How it ended; PLAYING means it ran out of turns.
+     */
+    public void record(long seed, Difficulty difficulty, int turns, int gold, int treasures, Outcome.Status status) {
+        Block block = blocks.get();
+        int row = block.rows++;
+        block.seeds[row] = seed;
+        block.modes[row] = (byte) difficulty.ordinal();
+        block.turns[row] = turns;
+        block.gold[row] = gold;
+        block.treasures[row] = (byte) treasures;
+        block.ends[row] = (byte) status.ordinal();
+        if (block.rows == BLOCK_ROWS) {
+            block.flush();
+        }
+    }
+
+    /**
+     * @return How many games have been written to the file so far (not counting ones still in a thread's block).
+     */
+    public long getGamesWritten() {
+        return games.get();
+    }
+
+    /**
+     * Writes out every thread's unfinished block and closes the file. Only call this once
+     * every thread has stopped recording.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Block block : allBlocks) {
+                block.flush();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // a Deflater holds native memory that the garbage collector doesn't see, so it is freed here
+            for (Block block : allBlocks) {
+                block.deflater.end();
+            }
+            channel.close();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * One thread's games waiting to be written, with the buffers used to pack and compress them.
+     */
+    private class Block {
+        private final long[] seeds = new long[BLOCK_ROWS];
+        private final byte[] modes = new byte[BLOCK_ROWS];
+        private final int[] turns = new int[BLOCK_ROWS];
+        private final int[] gold = new int[BLOCK_ROWS];
+        private final byte[] treasures = new byte[BLOCK_ROWS];
+        private final byte[] ends = new byte[BLOCK_ROWS];
+        private int rows;
+        private final ByteBuffer raw = ByteBuffer.allocate(BLOCK_ROWS * ROW_SIZE);
+        private byte[] compressed = new byte[BLOCK_HEADER_SIZE + BLOCK_ROWS * ROW_SIZE + 1024];
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        void flush() {
+            if (rows == 0) {
+                return;
+            }
+            raw.clear();
+            for (int i = 0; i < rows; i++) {
+                raw.putLong(seeds[i]);
+            }
+            raw.put(modes, 0, rows);
+            for (int i = 0; i < rows; i++) {
+                raw.putInt(turns[i]);
+            }
+            for (int i = 0; i < rows; i++) {
+                raw.putInt(gold[i]);
+            }
+            raw.put(treasures, 0, rows);
+            raw.put(ends, 0, rows);
+
+            deflater.reset();
+            deflater.setInput(raw.array(), 0, raw.position());
+            deflater.finish();
+            int length = BLOCK_HEADER_SIZE;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            ByteBuffer out = ByteBuffer.wrap(compressed, 0, length);
+            out.putInt(0, rows).putInt(4, length - BLOCK_HEADER_SIZE);
+
+            try {
+                writeFully(out, nextBlock.getAndAdd(length));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            games.addAndGet(rows);
+            rows = 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A CommandSource that plays back a script: a list of lines read up front, so it never waits.<p>
+ * In a script file, lines starting with # are comments and are skipped.
+ */
+
+public class ScriptCommandSource implements CommandSource {
+    // instance variables
+    private final List<String> lines;
+    private int position;
+
+    /**
+     * @param lines The lines to play back, in order.
+     */
+    public ScriptCommandSource(List<String> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Reads a whole script file.
+     *
+     * @param file The script file.
+     * @return A source that plays the script back.
+     * @throws IOException if the file can't be read.
+     */
+    public static ScriptCommandSource load(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (!line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        return new ScriptCommandSource(lines);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < lines.size();
+    }
+
+    @Override
+    public String nextLine() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("End of script");
+        }
+        return lines.get(position++);
+    }
+}
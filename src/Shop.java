@@ -1,29 +1,17 @@
-import java.awt.*;
-import java.util.Scanner;
-import java.util.spi.AbstractResourceBundleProvider;
-
 /**
  * The Shop class controls the cost of the items in the Treasure Hunt game. <p>
  * The Shop class also acts as a go between for the Hunter's buyItem() method. <p>
+ * A shop can trade in a shared Market, in which case its prices go up and down with what every
+ * player in the region has been buying and selling. <p>
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
 public class Shop {
-    // constants
-    private static final int WATER_COST = 2;
-    private static final int ROPE_COST = 4;
-    private static final int MACHETE_COST = 6;
-    private static final int HORSE_COST = 12;
-    private static final int BOAT_COST = 20;
-    private static final int BOOTS_COST = 50;
-    private static final int SHOVEL_COST = 8;
-
-    // static variables
-    private static final Scanner SCANNER = new Scanner(System.in);
-    OutputWindow window;
     // instance variables
-    private double markdown;
+    private PriceTable prices;
     private Hunter customer;
+    private Market market; // null for fixed prices
+    private int region;
 
     /**
      * The Shop constructor takes in a markdown value and leaves customer null until one enters the shop.
@@ -31,62 +19,100 @@ public class Shop {
      * @param markdown Percentage of markdown for selling items in decimal format.
      */
     public Shop(double markdown) {
-        this.markdown = markdown;
+        this(PriceTable.forMarkdown(markdown));
+    }
+
+    /**
+     * Makes a shop that uses the given prices, for example a catalogue loaded from a file.
+     *
+     * @param prices The shop's price table.
+     */
+    public Shop(PriceTable prices) {
+        this.prices = prices;
         customer = null; // customer is set in the enter method
     }
 
+    /**
+     * Makes the shop's prices follow a shared Market instead of staying fixed.
+     *
+     * @param market The market to trade in.
+     */
+    public void tradeAt(Market market) {
+        this.market = market;
+    }
+
     /**
      * Method for entering the shop.
      *
      * @param hunter the Hunter entering the shop
-     * @param buyOrSell String that determines if hunter is "B"uying or "S"elling
-     * @return a String to be used for printing in the latest news
      */
-    public String enter(Hunter hunter, String buyOrSell) {
+    public void enter(Hunter hunter) {
+        enter(hunter, 0);
+    }
+
+    /**
+     * Method for entering the shop in a town in the given region of the market.
+     *
+     * @param hunter the Hunter entering the shop
+     * @param region Which region's prices to use: the town's terrain index.
+     */
+    public void enter(Hunter hunter, int region) {
         customer = hunter;
-        window = customer.GetWindow();
-        if (buyOrSell.equals("b")) {
-            window.addTextToWindow("\nWelcome to the shop! We have the finest wares in town.", Color.black);
-            window.addTextToWindow("\nCurrently we have the following items:", Color.black);
-            window.addTextToWindow(inventory(), Color.black);
-            window.addTextToWindow("\nWhat're you lookin' to buy? ", Color.black);
-            String item = SCANNER.nextLine().toLowerCase();
-            int cost = checkMarketPrice(item, true);
-            if (cost == 0 && !customer.getHunterSamuraiMode())  {
-                window.addTextToWindow("\nWe ain't got none of those.", Color.black);
-            } else if (cost == 0 && !item.equals("sword")) {
-                window.addTextToWindow("\nWe ain't got none of those.", Color.black);
-            } else {
-                window.addTextToWindow("\nIt'll cost you " + cost + " gold. Buy it (y/n)? " , Color.black);
-                String option = SCANNER.nextLine().toLowerCase();
-                if (option.equals("y")) {
-                    if (customer.hasItemInKit("sword") && item.equals("boots")){
-                        window.addTextToWindow("\nThe sword's aura scared the shopkeeper and he gives you the item for free.", Color.black);
-                        customer.addItem("boots");
-                    }else if (customer.hasItemInKit("sword")) {
-                        window.addTextToWindow("\nThe sword's aura scared the shopkeeper and he gives you the item for free.", Color.black);
-                    }
-                    if (!(customer.hasItemInKit("sword") && item.equals("boots"))){
-                        buyItem(item);
-                    }
-                }
-            }
-        } else {
-            window.addTextToWindow("\nWhat're you lookin' to sell? ", Color.black);
-            window.addTextToWindow("\nYou currently have the following items: " + customer.getInventory(), Color.black);
-            String item = SCANNER.nextLine().toLowerCase();
-            int cost = checkMarketPrice(item, false);
-            if (cost == 0) {
-                window.addTextToWindow("\nWe don't want none of those.", Color.black);
-            } else {
-                window.addTextToWindow("\nIt'll get you " + cost + " gold. Sell it (y/n)? ", Color.black);
-                String option = SCANNER.nextLine().toLowerCase();
-                if (option.equals("y")) {
-                    sellItem(item);
-                }
-            }
+        this.region = region;
+    }
+
+    /**
+     * Checks whether the shop has the item on its shelves.
+     * The sword is free, so it is only for sale to a samurai.
+     *
+     * @param item The item the customer asked for.
+     * @return true if the item can be bought here.
+     */
+    public boolean isForSale(String item) {
+        Item parsed = Item.fromName(item);
+        return parsed != null && prices.isStocked(parsed, customer.getHunterSamuraiMode());
+    }
+
+    /**
+     * Handles a customer asking to buy an item.
+     *
+     * @param item The item the customer asked for.
+     * @param confirmed Whether the customer agreed to the price.
+     * @return what the shopkeeper says back, as up to two packed GameEvents (0 if nothing)
+     */
+    public long buy(String item, boolean confirmed) {
+        if (!isForSale(item)) {
+            return GameEvent.news(GameEvent.NOT_STOCKED.event());
+        }
+        if (!confirmed) {
+            return 0;
+        }
+        if (customer.hasItem(Item.SWORD) && item.equals("boots")) {
+            customer.addItem(Item.BOOTS);
+            return GameEvent.news(GameEvent.SWORD_SCARED.event());
+        }
+        if (customer.hasItem(Item.SWORD)) {
+            return GameEvent.news(GameEvent.SWORD_SCARED.event(), buyItem(item));
+        }
+        return GameEvent.news(buyItem(item));
+    }
+
+    /**
+     * Handles a customer asking to sell an item.
+     *
+     * @param item The item the customer wants to sell.
+     * @param confirmed Whether the customer agreed to the price.
+     * @return what the shopkeeper says back, as packed GameEvents (0 if nothing)
+     */
+    public long sell(String item, boolean confirmed) {
+        int cost = checkMarketPrice(item, false);
+        if (cost == 0) {
+            return GameEvent.news(GameEvent.NOT_WANTED.event());
         }
-        return "You left the shop";
+        if (!confirmed) {
+            return 0;
+        }
+        return GameEvent.news(sellItem(item));
     }
 
     /**
@@ -96,30 +122,37 @@ public class Shop {
      * @return the string representing the shop's items available for purchase and their prices.
      */
     public String inventory() {
-        String str = "\nWater: " + WATER_COST + " gold\n";
-        str += "Rope: " + ROPE_COST + " gold\n";
-        str += "Machete: " + MACHETE_COST + " gold\n";
-        str += "Horse: " + HORSE_COST + " gold\n";
-        str += "Boat: " + BOAT_COST + " gold\n";
-        str += "Boots: " + BOOTS_COST + " gold\n";
-        str += "Shovel: " + SHOVEL_COST +  " gold\n";
-        if (customer.getHunterSamuraiMode()) {
-            str += "Sword: " + 0 + " gold\n";
+        if (market == null) {
+            return prices.catalogue(customer.getHunterSamuraiMode());
+        }
+        StringBuilder str = new StringBuilder("\n");
+        for (Item item : prices.getListed()) {
+            if (prices.isStocked(item, customer.getHunterSamuraiMode())) {
+                String name = item.getName();
+                str.append(Character.toUpperCase(name.charAt(0))).append(name, 1, name.length())
+                        .append(": ").append(getCostOfItem(name)).append(" gold\n");
+            }
         }
-        return str;
+        return str.toString();
     }
 
     /**
      * A method that lets the customer (a Hunter) buy an item.
      *
      * @param item The item being bought.
+     * @return what the shopkeeper says back, as a packed GameEvent
      */
-    public void buyItem(String item) {
+    public int buyItem(String item) {
         int costOfItem = checkMarketPrice(item, true);
+        int goldBefore = customer.getGold();
         if (customer.buyItem(item, costOfItem)) {
-            window.addTextToWindow("\nYe' got yerself a " + item + ". Come again soon.", Color.black);
+            if (market != null && costOfItem > 0) {
+                market.bought(region, Item.fromName(item));
+            }
+            GameMetrics.INSTANCE.recordPurchase(goldBefore - customer.getGold());
+            return GameEvent.BOUGHT.event(Item.fromName(item).ordinal());
         } else {
-            window.addTextToWindow("\nHmm, either you don't have enough gold or you've already got one of those!", Color.black);
+            return GameEvent.CANT_BUY.event();
         }
     }
 
@@ -127,13 +160,18 @@ public class Shop {
      * A pathway method that lets the Hunter sell an item.
      *
      * @param item The item being sold.
+     * @return what the shopkeeper says back, as a packed GameEvent
      */
-    public void sellItem(String item) {
+    public int sellItem(String item) {
         int buyBackPrice = checkMarketPrice(item, false);
         if (customer.sellItem(item, buyBackPrice)) {
-            window.addTextToWindow("\nPleasure doin' business with you.", Color.black);
+            if (market != null) {
+                market.sold(region, Item.fromName(item));
+            }
+            GameMetrics.INSTANCE.recordSale(buyBackPrice);
+            return GameEvent.SOLD.event();
         } else {
-            window.addTextToWindow("\nStop stringin' me along!", Color.black);
+            return GameEvent.CANT_SELL.event();
         }
     }
 
@@ -153,44 +191,45 @@ public class Shop {
     }
 
     /**
-     * Checks the item entered against the costs listed in the static variables.
+     * Looks the item up in the price table.
      *
      * @param item The item being checked for cost.
      * @return The cost of the item or 0 if the item is not found.
      */
     public int getCostOfItem(String item) {
-        if (customer.getHunterSamuraiMode()) {
-            if (item.equals("sword")) {
-                return 0;
-            }
-        }
-        if (item.equals("water")) {
-            return WATER_COST;
-        } else if (item.equals("rope")) {
-            return ROPE_COST;
-        } else if (item.equals("machete")) {
-            return MACHETE_COST;
-        } else if (item.equals("horse")) {
-            return HORSE_COST;
-        } else if (item.equals("boat")) {
-            return BOAT_COST;
-        } else if (item.equals("boots")) {
-            return BOOTS_COST;
-        } else if (item.equals("shovel")) {
-            return SHOVEL_COST;
-        } else {
+        Item parsed = Item.fromName(item);
+        if (parsed == null) {
             return 0;
         }
+        return quote(parsed, customer.getHunterSamuraiMode(), region);
+    }
+
+    /**
+     * Looks up what an item would cost without anyone entering the shop, so a bot can weigh up its choices
+     * while only looking.
+     *
+     * @param item The item being checked for cost.
+     * @param samurai Whether the buyer is a samurai.
+     * @param region Which region's prices to use: the town's terrain index.
+     * @return The cost of the item, or 0 if it isn't for sale to the buyer.
+     */
+    public int quote(Item item, boolean samurai, int region) {
+        int price = prices.buyPrice(item, samurai);
+        return market == null ? price : market.price(region, item, price);
     }
 
     /**
-     * Checks the cost of an item and applies the markdown.
+     * Looks up the price the shop pays for an item, which already has the markdown applied.
      *
      * @param item The item being sold.
      * @return The sell price of the item.
      */
     public int getBuyBackCost(String item) {
-        int cost = (int) (getCostOfItem(item) * markdown);
-        return cost;
+        Item parsed = Item.fromName(item);
+        if (parsed == null) {
+            return 0;
+        }
+        int price = prices.sellPrice(parsed);
+        return market == null ? price : market.price(region, parsed, price);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+/**
+ * The SimulationStats class keeps running totals for a batch of simulated games.<p>
+ * Only counters and a histogram of game lengths are kept, so the memory used does not grow
+ * with the number of games. Two sets of stats can be merged, which is how the worker threads combine their results.
+ */
+
+public class SimulationStats {
+    // instance variables
+    private long games;
+    private long wins;
+    private long bankruptcies;
+    private long timeouts;
+    private long totalTurns;
+    private final long[] turnsToWin; // turnsToWin[t] = number of games won on turn t
+
+    /**
+     * @param maxTurns The longest game that will be recorded.
+     */
+    public SimulationStats(int maxTurns) {
+        turnsToWin = new long[maxTurns + 1];
+    }
+
+    /**
+     * Records the end of one game.
+     *
+     * @param status How the game ended.
+     * @param turns How many actions the game took.
+     */
+    public void record(Outcome.Status status, int turns) {
+        games++;
+        totalTurns += turns;
+        if (status == Outcome.Status.WON) {
+            wins++;
+            turnsToWin[Math.min(turns, turnsToWin.length - 1)]++;
+        } else if (status == Outcome.Status.LOST) {
+            bankruptcies++;
+        } else {
+            timeouts++;
+        }
+    }
+
+    /**
+     * Adds another set of stats into this one.
+     *
+     * @param other The stats to add. Must have been created with the same maxTurns.
+     */
+    public void merge(SimulationStats other) {
+        games += other.games;
+        wins += other.wins;
+        bankruptcies += other.bankruptcies;
+        timeouts += other.timeouts;
+        totalTurns += other.totalTurns;
+        for (int i = 0; i < turnsToWin.length; i++) {
+            turnsToWin[i] += other.turnsToWin[i];
+        }
+    }
+
+    // accessors
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getBankruptcies() {
+        return bankruptcies;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getTotalTurns() {
+        return totalTurns;
+    }
+
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    public double getBankruptcyRate() {
+        return games == 0 ? 0 : (double) bankruptcies / games;
+    }
+
+    /**
+     * Finds the number of turns it took to win, at the given percentile of won games.
+     *
+     * @param percentile A value between 0 and 100.
+     * @return The number of turns, or -1 if no games were won.
+     */
+    public int turnsToWinPercentile(double percentile) {
+        if (wins == 0) {
+            return -1;
+        }
+        long target = (long) Math.ceil(wins * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < turnsToWin.length; i++) {
+            seen += turnsToWin[i];
+            if (seen >= Math.max(target, 1)) {
+                return i;
+            }
+        }
+        return turnsToWin.length - 1;
+    }
+
+    /**
+     * @param label The name shown at the start of the report, usually the difficulty.
+     * @return A printable summary of the stats.
+     */
+    public String report(String label) {
+        return String.format("%-8s games=%d win=%.2f%% bankrupt=%.2f%% timeout=%.2f%% turnsToWin p10=%d p50=%d p90=%d p99=%d",
+                label, games, 100 * getWinRate(), 100 * getBankruptcyRate(),
+                games == 0 ? 0 : 100.0 * timeouts / games,
+                turnsToWinPercentile(10), turnsToWinPercentile(50),
+                turnsToWinPercentile(90), turnsToWinPercentile(99));
+    }
+}
@@ -0,0 +1,264 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The SnapshotFile keeps saved games in a memory-mapped file.<p>
+ * The file starts with a 16 byte header (magic, format version, record size, number of slots) followed by
+ * fixed-size slots, one per saved game. Every value sits at a fixed offset in its slot, so saving a game is a
+ * handful of stores into the mapped memory and loading or scanning saves needs no parsing at all.
+ * Games are kept under the hunter's name; saving again under the same name overwrites the old save.<p>
+ *
+ * Slot layout (version 1, 128 bytes):
+ * <pre>
+ *   0  flags: used, samurai, bankrupt, searched, dug, tough town, easy mode
+ *   1  difficulty (ordinal)
+ *   2  terrain index
+ *   3  find index (dust, crown, trophy, gem)
+ *   4  kit mask
+ *   5  treasure mask
+ *   8  gold (int)
+ *  16  seed (long)
+ *  24  random state (long)
+ *  32  name length, followed by up to 95 bytes of UTF-8 name
+ * </pre>
+ */
+
+public class SnapshotFile implements Closeable {
+    private static final int MAGIC = 0x54485356; // "THSV"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 128;
+    private static final int NAME_OFFSET = 32;
+    private static final int MAX_NAME_BYTES = RECORD_SIZE - NAME_OFFSET - 1;
+
+    private static final int USED = 1;
+    private static final int SAMURAI = 1 << 1;
+    private static final int BANKRUPT = 1 << 2;
+    private static final int SEARCHED = 1 << 3;
+    private static final int DUG = 1 << 4;
+    private static final int TOUGH = 1 << 5;
+    private static final int EASY = 1 << 6;
+
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+    private static final int FINDS = 4; // dust, crown, trophy, gem
+
+    // instance variables
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    /**
+     * Opens a snapshot file, creating it with room for the given number of saves if it doesn't exist.
+     *
+     * @param file The snapshot file.
+     * @param capacity How many saves a new file has room for. An existing file keeps its own size.
+     * @throws IOException if the file can't be opened or was written by a newer version of the game.
+     */
+    public SnapshotFile(Path file, int capacity) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(12, capacity);
+            this.capacity = capacity;
+        } else {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC) {
+                channel.close();
+                throw new IOException("Not a Treasure Hunter save file");
+            }
+            if (buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE) {
+                channel.close();
+                throw new IOException("Save file is format version " + buffer.getInt(4) + ", this game reads version " + VERSION);
+            }
+            this.capacity = buffer.getInt(12);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Saves a game in the slot for the hunter's name, or the first empty slot if they have no save yet.
+     *
+     * @param state The game to save. It can't be on a World map, as a slot has no room for the map.
+     * @return true if the game was saved, false if the file is full.
+     */
+    public boolean save(GameState state) {
+        if (state.getWorld() != null) {
+            throw new IllegalArgumentException("Games on a World map can't be saved");
+        }
+        byte[] name = nameBytes(state.getHunter().getHunterName());
+        int slot = findSlot(name);
+        if (slot < 0) {
+            slot = findFreeSlot();
+            if (slot < 0) {
+                return false;
+            }
+        }
+        int base = offset(slot);
+        Hunter hunter = state.getHunter();
+        Town town = state.getTown();
+        // an old save in the slot is marked unused first, so a save cut short can't load as half old, half new
+        buffer.put(base, (byte) 0);
+
+        int flags = USED;
+        if (hunter.getHunterSamuraiMode()) {
+            flags |= SAMURAI;
+        }
+        if (hunter.getBankruptcy()) {
+            flags |= BANKRUPT;
+        }
+        if (town.getSearched()) {
+            flags |= SEARCHED;
+        }
+        if (town.getTownDug()) {
+            flags |= DUG;
+        }
+        if (town.isToughTown()) {
+            flags |= TOUGH;
+        }
+        if (state.getDifficulty().isEasyMode()) {
+            flags |= EASY;
+        }
+        buffer.put(base + 1, (byte) state.getDifficulty().ordinal());
+        buffer.put(base + 2, (byte) town.getTerrainIndex());
+        buffer.put(base + 3, (byte) town.getFindIndex());
+        buffer.put(base + 4, (byte) hunter.getKitMask());
+        buffer.put(base + 5, (byte) hunter.getTreasureMask());
+        buffer.putInt(base + 8, hunter.getGold());
+        buffer.putLong(base + 16, state.getSeed());
+        buffer.putLong(base + 24, state.getRandomState());
+        buffer.put(base + NAME_OFFSET, (byte) name.length);
+        buffer.put(base + NAME_OFFSET + 1, name);
+        // the flags go back in last, so the slot only counts as used once every field is written
+        buffer.put(base, (byte) flags);
+        return true;
+    }
+
+    /**
+     * @param hunterName The name the game was saved under.
+     * @return The saved game, or null if there is no save for that name.
+     */
+    public GameState load(String hunterName) {
+        int slot = findSlot(nameBytes(hunterName));
+        return slot < 0 ? null : load(slot);
+    }
+
+    /**
+     * @param slot The slot number, from 0 to getCapacity() - 1.
+     * @return The game saved in that slot, or null if the slot is empty or holds values no game could have
+     * (the file is damaged), in which case the slot is treated as empty and the next save reuses it.
+     */
+    public GameState load(int slot) {
+        int base = offset(slot);
+        int flags = buffer.get(base);
+        if ((flags & USED) == 0) {
+            return null;
+        }
+        int ordinal = buffer.get(base + 1) & 0xFF;
+        int terrainIndex = buffer.get(base + 2) & 0xFF;
+        int findIndex = buffer.get(base + 3) & 0xFF;
+        int nameLength = buffer.get(base + NAME_OFFSET) & 0xFF;
+        if (ordinal >= DIFFICULTIES.length || terrainIndex >= Terrain.count() || findIndex >= FINDS
+                || nameLength > MAX_NAME_BYTES) {
+            return null;
+        }
+        byte[] name = new byte[nameLength];
+        buffer.get(base + NAME_OFFSET + 1, name);
+        Hunter hunter = new Hunter(new String(name, StandardCharsets.UTF_8), buffer.getInt(base + 8),
+                (flags & SAMURAI) != 0, buffer.get(base + 4) & 0xFF, buffer.get(base + 5) & 0xFF, (flags & BANKRUPT) != 0);
+        Difficulty difficulty = DIFFICULTIES[ordinal];
+        return new GameState(hunter, difficulty, buffer.getLong(base + 16), buffer.getLong(base + 24),
+                (shop, random) -> Town.restore(shop, difficulty.getProfile(), random, terrainIndex,
+                        (flags & TOUGH) != 0, findIndex, (flags & SEARCHED) != 0, (flags & DUG) != 0));
+    }
+
+    /**
+     * Empties the slot for the given name, for example once that game has been won or lost.
+     *
+     * @param hunterName The name the game was saved under.
+     */
+    public void delete(String hunterName) {
+        int slot = findSlot(nameBytes(hunterName));
+        if (slot >= 0) {
+            buffer.put(offset(slot), (byte) 0);
+        }
+    }
+
+    /**
+     * Reads a value straight out of a slot without loading the whole game, for scanning many saves quickly.
+     *
+     * @param slot The slot number.
+     * @return The gold saved in the slot, or -1 if the slot is empty.
+     */
+    public int goldInSlot(int slot) {
+        int base = offset(slot);
+        return (buffer.get(base) & USED) == 0 ? -1 : buffer.getInt(base + 8);
+    }
+
+    /**
+     * Writes any saves still in memory out to the disk.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private int findSlot(byte[] name) {
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = offset(slot);
+            if ((buffer.get(base) & USED) != 0 && nameMatches(base, name)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int findFreeSlot() {
+        for (int slot = 0; slot < capacity; slot++) {
+            if ((buffer.get(offset(slot)) & USED) == 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean nameMatches(int base, byte[] name) {
+        if (buffer.get(base + NAME_OFFSET) != name.length) {
+            return false;
+        }
+        return buffer.slice(base + NAME_OFFSET + 1, name.length).equals(ByteBuffer.wrap(name));
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    /**
+     * Names longer than a slot can hold are cut short, so they still save (and load) under the shorter name.
+     */
+    private static byte[] nameBytes(String hunterName) {
+        byte[] name = hunterName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            byte[] shortened = new byte[MAX_NAME_BYTES];
+            System.arraycopy(name, 0, shortened, 0, MAX_NAME_BYTES);
+            return shortened;
+        }
+        return name;
+    }
+}
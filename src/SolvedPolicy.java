@@ -0,0 +1,87 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The SolvedPolicy plays the best moves the Solver worked out, read back from a policy file it wrote.<p>
+ * A policy is solved for one difficulty, so it only plays games on that difficulty. Each move is one lookup:
+ * the game is packed into the Solver's state id and the action stored for that state is played.
+ */
+
+public class SolvedPolicy implements BotPolicy {
+    // instance variables
+    private final Difficulty difficulty;
+    private final int maxGold;
+    private final byte[] policy;
+
+    private SolvedPolicy(Difficulty difficulty, int maxGold, byte[] policy) {
+        this.difficulty = difficulty;
+        this.maxGold = maxGold;
+        this.policy = policy;
+    }
+
+    /**
+     * Reads a policy written by Solver.writePolicy().
+     *
+     * @param file The policy file.
+     * @return The policy.
+     * @throws IOException if the file can't be read, isn't a policy file or is damaged.
+     */
+    public static SolvedPolicy load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            for (byte b : Solver.POLICY_MAGIC) {
+                if (in.readByte() != b) {
+                    throw new IOException(file + " is not a Solver policy");
+                }
+            }
+            int ordinal = in.readUnsignedByte();
+            Difficulty[] difficulties = Difficulty.values();
+            if (ordinal >= difficulties.length) {
+                throw new IOException(file + " is for an unknown difficulty " + ordinal);
+            }
+            Difficulty difficulty = difficulties[ordinal];
+            int maxGold = in.readInt();
+            int kitBits = in.readUnsignedByte();
+            if (maxGold < 0 || kitBits != Solver.kitBits(difficulty)) {
+                throw new IOException(file + " has a header this version of the Solver didn't write");
+            }
+            long states = Solver.stateCount(difficulty, maxGold);
+            if (states != Files.size(file) - Solver.POLICY_HEADER_SIZE) {
+                throw new IOException(file + " should hold " + states + " states after its header");
+            }
+            byte[] policy = new byte[(int) states];
+            in.readFully(policy);
+            int actions = Solver.SELL + Item.values().length;
+            for (byte action : policy) {
+                if (action < 0 || action >= actions) {
+                    throw new IOException(file + " holds an unknown action " + action);
+                }
+            }
+            return new SolvedPolicy(difficulty, maxGold, policy);
+        }
+    }
+
+    // accessors
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    public int getMaxGold() {
+        return maxGold;
+    }
+
+    /**
+     * @param state The game being played, which has to be on the difficulty the policy was solved for.
+     * @throws IllegalArgumentException if the game is on another difficulty.
+     */
+    @Override
+    public Action chooseAction(GameState state) {
+        if (state.getDifficulty() != difficulty) {
+            throw new IllegalArgumentException("This policy was solved for " + difficulty + ", not "
+                    + state.getDifficulty());
+        }
+        return Solver.toAction(policy[Solver.stateId(state, difficulty, maxGold)]);
+    }
+}
@@ -0,0 +1,531 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The Solver works out the best possible way to play one difficulty, using value iteration.<p>
+ * Every situation the hunter can be in is given a number (a packed state id) built from these bits:
+ * <pre>
+ *   bit 0        town dug
+ *   bit 1        town searched
+ *   bit 2        tough town
+ *   bits 3-4     what searching turns up (dust, crown, trophy, gem)
+ *   bits 5-7     terrain
+ *   bits 8-10    treasures found
+ *   next 7 or 8  kit (8 bits only for samurai, who can own a sword)
+ *   the rest     gold
+ * </pre>
+ * The expected cost of each state is kept in a float[] indexed by that number, so the whole state space
+ * is a few arrays rather than millions of objects. Each turn costs 1, going bankrupt or giving up costs
+ * a fixed penalty, and finding the last treasure ends the game at no further cost. The chances used are
+ * taken from the DifficultyProfile, so they are exactly the ones Town and the dig action use.<p>
+ * Gold above maxGold is treated as maxGold, which keeps the table small; the answer only changes if having
+ * more than that much gold would change the best move.<p>
+ *
+ * Usage: java Solver [difficulty] [maxGold] [policyFile] -- the policy file can be played by a SolvedPolicy,
+ * for example with java BatchRunner [games] [maxTurns] policyFile
+ */
+
+public class Solver {
+    // actions, as stored in the policy
+    public static final int HUNT = 0;
+    public static final int DIG = 1;
+    public static final int BRAWL = 2;
+    public static final int MOVE = 3;
+    public static final int QUIT = 4;
+    public static final int BUY = 5; // BUY + item ordinal
+    public static final int SELL = BUY + Item.values().length; // SELL + item ordinal
+
+    static final byte[] POLICY_MAGIC = {'T', 'H', 'P', '1'};
+    static final int POLICY_HEADER_SIZE = 10; // magic, difficulty, maxGold, kit bits
+
+    private static final float PENALTY = 1000;
+    private static final int TREASURE_SHIFT = 8;
+    private static final int KIT_SHIFT = 11;
+
+    // the rules of the difficulty being solved
+    private final Difficulty difficulty;
+    private final DifficultyProfile profile;
+    private final int maxGold;
+    private final int kitBits;
+    private final int goldShift;
+    private final int stateCount;
+    private final int[] buyPrice;
+    private final int[] sellPrice;
+    private final Terrain[] terrains;
+    private final double breakChance;
+    private final double[] findChance;
+    private final double digChance;
+    private final int digMax;
+    private final int brawlMax;
+
+    // the value tables
+    private final float[] values;
+    private float[] newTown; // expected value of arriving in a new town, by (gold, kit, treasures)
+    private final byte[] policy;
+
+    /**
+     * @param difficulty The difficulty to solve.
+     * @param maxGold The most gold tracked exactly.
+     */
+    public Solver(Difficulty difficulty, int maxGold) {
+        this(difficulty.getProfile(), maxGold);
+    }
+
+    /**
+     * @param profile The numbers of the game to solve.
+     * @param maxGold The most gold tracked exactly.
+     */
+    public Solver(DifficultyProfile profile, int maxGold) {
+        this.profile = profile;
+        difficulty = profile.getDifficulty();
+        this.maxGold = maxGold;
+        kitBits = kitBits(difficulty);
+        goldShift = KIT_SHIFT + kitBits;
+        stateCount = (int) stateCount(difficulty, maxGold);
+
+        PriceTable prices = profile.getPrices();
+        int items = Item.values().length;
+        buyPrice = new int[items];
+        sellPrice = new int[items];
+        for (int i = 0; i < items; i++) {
+            buyPrice[i] = prices.isStocked(Item.fromOrdinal(i), difficulty.isSamuraiMode())
+                    ? prices.buyPrice(Item.fromOrdinal(i), difficulty.isSamuraiMode()) : -1;
+            sellPrice[i] = prices.sellPrice(Item.fromOrdinal(i));
+        }
+
+        terrains = new Terrain[Terrain.count()];
+        for (int t = 0; t < terrains.length; t++) {
+            terrains[t] = Terrain.get(t);
+        }
+        breakChance = profile.getBreakChance();
+        findChance = new double[4];
+        for (int find = 0; find < findChance.length; find++) {
+            findChance[find] = profile.getFindChance(find);
+        }
+        digChance = profile.getDigChance();
+        digMax = profile.getDigGold();
+        brawlMax = profile.getBrawlGold();
+
+        values = new float[stateCount];
+        // giving up is always possible, so PENALTY is an upper bound on every state; starting there means
+        // hopeless states are already right and the rest only come down as winning lines are found
+        Arrays.fill(values, PENALTY);
+        newTown = new float[(maxGold + 1) << (kitBits + 3)];
+        policy = new byte[stateCount];
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Only a samurai can own a sword, the last item, so the other modes leave its bit out of the kit.
+     */
+    static int kitBits(Difficulty difficulty) {
+        return difficulty.isSamuraiMode() ? Item.values().length : Item.values().length - 1;
+    }
+
+    /**
+     * @param difficulty The difficulty solved.
+     * @param maxGold The most gold tracked exactly.
+     * @return How many states, and so how many bytes of policy, there are.
+     */
+    static long stateCount(Difficulty difficulty, int maxGold) {
+        return (long) (maxGold + 1) << (KIT_SHIFT + kitBits(difficulty));
+    }
+
+    /**
+     * Packs a situation into its state id.
+     */
+    public int stateId(int gold, int kit, int treasures, int terrain, int find, boolean tough, boolean searched, boolean dug) {
+        return pack(Math.min(gold, maxGold), kit, treasures, terrain, find, tough, searched, dug, goldShift);
+    }
+
+    private static int pack(int gold, int kit, int treasures, int terrain, int find, boolean tough, boolean searched,
+                            boolean dug, int goldShift) {
+        int town = (terrain << 5) | (find << 3) | (tough ? 4 : 0) | (searched ? 2 : 0) | (dug ? 1 : 0);
+        return (gold << goldShift) | (kit << KIT_SHIFT) | (treasures << TREASURE_SHIFT) | town;
+    }
+
+    /**
+     * Packs the situation in a game being played into its state id.
+     *
+     * @param state The game.
+     * @return The state id, which can be looked up in the policy.
+     */
+    public int stateId(GameState state) {
+        return stateId(state, difficulty, maxGold);
+    }
+
+    /**
+     * Packs the situation in a game into its state id for a policy solved with the given settings, so a
+     * policy read back from a file can be looked up without a Solver.
+     *
+     * @param state The game.
+     * @param difficulty The difficulty the policy was solved for.
+     * @param maxGold The most gold the policy tracks exactly.
+     * @return The state id.
+     */
+    static int stateId(GameState state, Difficulty difficulty, int maxGold) {
+        Hunter hunter = state.getHunter();
+        Town town = state.getTown();
+        int kitBits = kitBits(difficulty);
+        return pack(Math.min(Math.max(hunter.getGold(), 0), maxGold), hunter.getKitMask() & ((1 << kitBits) - 1),
+                hunter.getTreasureMask(), town.getTerrainIndex(), town.getFindIndex(), town.isToughTown(),
+                town.getSearched(), town.getTownDug(), KIT_SHIFT + kitBits);
+    }
+
+    /**
+     * @param stateId A packed state id.
+     * @return The best action in that state (one of the action constants).
+     */
+    public int bestAction(int stateId) {
+        return policy[stateId];
+    }
+
+    /**
+     * Turns a policy action into an Action the GameEngine can carry out.
+     *
+     * @param action One of the action constants.
+     * @return The matching Action.
+     */
+    public static Action toAction(int action) {
+        switch (action) {
+            case HUNT:
+                return Action.hunt();
+            case DIG:
+                return Action.dig();
+            case BRAWL:
+                return Action.brawl();
+            case MOVE:
+                return Action.move();
+            case QUIT:
+                return Action.quit();
+            default:
+                if (action < SELL) {
+                    return Action.buy(Item.fromOrdinal(action - BUY).getName(), true);
+                }
+                return Action.sell(Item.fromOrdinal(action - SELL).getName(), true);
+        }
+    }
+
+    /**
+     * Runs value iteration until no state's value changes by more than epsilon.
+     *
+     * @param epsilon How small the largest change has to be to stop.
+     * @param maxSweeps The most sweeps to run.
+     * @return The number of sweeps run.
+     */
+    public int solve(double epsilon, int maxSweeps) {
+        int sweeps = 0;
+        double change;
+        do {
+            change = sweep(true);
+            sweeps++;
+        } while (change > epsilon && sweeps < maxSweeps);
+        return sweeps;
+    }
+
+    /**
+     * Works out the chance of winning when following the policy from every state.
+     * The value table is reused for this, so call it after solve() and after reading any expected costs.
+     *
+     * @param epsilon How small the largest change has to be to stop.
+     * @param maxSweeps The most sweeps to run.
+     */
+    public void evaluateWinChance(double epsilon, int maxSweeps) {
+        Arrays.fill(values, 0);
+        int sweeps = 0;
+        double change;
+        do {
+            change = sweep(false);
+            sweeps++;
+        } while (change > epsilon && sweeps < maxSweeps);
+    }
+
+    /**
+     * @param gold The starting gold.
+     * @param kit The starting kit.
+     * @return The current value table averaged over every town the game could start in.
+     */
+    public double startValue(int gold, int kit) {
+        double total = 0;
+        for (int terrain = 0; terrain < terrains.length; terrain++) {
+            for (int find = 0; find < findChance.length; find++) {
+                for (int tough = 0; tough < 2; tough++) {
+                    double chance = findChance[find] / terrains.length
+                            * (tough == 1 ? profile.getToughness() : 1 - profile.getToughness());
+                    total += chance * values[stateId(gold, kit, 0, terrain, find, tough == 1, false, false)];
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * One sweep over every state, in parallel.
+     * Values are updated in place, so later states in a sweep already see the new values of earlier ones
+     * (Gauss-Seidel style), which needs far fewer sweeps than keeping two tables. Tasks racing on the same
+     * entries only ever read a slightly older value, which value iteration tolerates.
+     *
+     * @param optimize true to pick the best action in each state (value iteration), false to follow the
+     *                 current policy and compute the chance of winning (policy evaluation).
+     * @return The largest change in any state's value.
+     */
+    private double sweep(boolean optimize) {
+        computeNewTownValues();
+        int chunk = 1 << KIT_SHIFT; // one (gold, kit) pair per task: all treasures and towns
+        return IntStream.range(0, stateCount / chunk).parallel()
+                .mapToDouble(c -> sweepRange(c * chunk, (c + 1) * chunk, optimize))
+                .max().orElse(0);
+    }
+
+    private double sweepRange(int from, int to, boolean optimize) {
+        double change = 0;
+        float win = optimize ? 0 : 1;
+        for (int s = from; s < to; s++) {
+            int treasures = (s >>> TREASURE_SHIFT) & 7;
+            float value;
+            if (((s >>> 5) & 7) >= terrains.length) {
+                continue; // terrain bits with no terrain behind them
+            } else if (treasures == Treasure.ALL) {
+                value = win;
+            } else if (optimize) {
+                float best = PENALTY;
+                int bestAction = QUIT;
+                for (int a = 0; a < SELL + Item.values().length; a++) {
+                    float q = actionValue(s, a, true);
+                    if (q < best) {
+                        best = q;
+                        bestAction = a;
+                    }
+                }
+                value = best;
+                policy[s] = (byte) bestAction;
+            } else {
+                value = actionValue(s, policy[s], false);
+            }
+            change = Math.max(change, Math.abs(value - values[s]));
+            values[s] = value;
+        }
+        return change;
+    }
+
+    /**
+     * The expected value of taking action a in state s, reading the current value table.
+     * When costs is true, each turn costs 1 and losing costs PENALTY; otherwise every turn is free,
+     * winning is worth 1 and losing 0, which gives the chance of winning.
+     */
+    private float actionValue(int s, int a, boolean costs) {
+        float turn = costs ? 1 : 0;
+        float lose = costs ? PENALTY : 0;
+        float win = costs ? 0 : 1;
+        int gold = s >>> goldShift;
+        int kit = (s >>> KIT_SHIFT) & ((1 << kitBits) - 1);
+        int treasures = (s >>> TREASURE_SHIFT) & 7;
+        int terrain = (s >>> 5) & 7;
+        int find = (s >>> 3) & 3;
+        boolean tough = (s & 4) != 0;
+        boolean searched = (s & 2) != 0;
+        boolean dug = (s & 1) != 0;
+        boolean hasSword = (kit & Item.SWORD.bit()) != 0;
+        float stay = turn + values[s];
+
+        switch (a) {
+            case HUNT: {
+                if (searched) {
+                    return stay;
+                }
+                int found = find == 0 ? treasures : treasures | Treasure.fromOrdinal(find - 1).bit();
+                if (found == Treasure.ALL) {
+                    return turn + win;
+                }
+                return turn + values[(s | 2) & ~(7 << TREASURE_SHIFT) | (found << TREASURE_SHIFT)];
+            }
+            case DIG: {
+                if (dug || (kit & Item.SHOVEL.bit()) == 0) {
+                    return stay;
+                }
+                int base = (s | 1) & ((1 << goldShift) - 1);
+                double total = (1 - digChance) * values[base | (gold << goldShift)];
+                for (int found = 0; found <= digMax; found++) {
+                    total += digChance / (digMax + 1) * values[base | (Math.min(gold + found, maxGold) << goldShift)];
+                }
+                return (float) (turn + total);
+            }
+            case BRAWL: {
+                if (hasSword) {
+                    // the brawler surrenders to a sword, but the gold is never handed over
+                    return stay;
+                }
+                // finding no trouble leaves everything as it was, so brawling until there is trouble is
+                // solved directly rather than left for the sweeps: V = (turn + sum over fights) / trouble
+                double trouble = profile.getTroubleChance(tough);
+                if (trouble == 0) {
+                    return stay;
+                }
+                int base = s & ((1 << goldShift) - 1);
+                double total = 0;
+                for (int diff = 1; diff <= brawlMax; diff++) {
+                    total += (1 - trouble) / brawlMax * values[base | (Math.min(gold + diff, maxGold) << goldShift)];
+                    total += trouble / brawlMax * (gold - diff < 0 ? lose : values[base | ((gold - diff) << goldShift)]);
+                }
+                return (float) (turn / trouble + total);
+            }
+            case MOVE: {
+                if ((kit & terrains[terrain].getCrossingMask()) == 0) {
+                    return stay;
+                }
+                int used = terrains[terrain].itemUsedBy(kit).bit();
+                int keep = newTownIndex(gold, kit, treasures);
+                int broke = newTownIndex(gold, kit & ~used, treasures);
+                return (float) (turn + (1 - breakChance) * newTown[keep] + breakChance * newTown[broke]);
+            }
+            case QUIT:
+                return lose;
+            default:
+                if (a < SELL) {
+                    return buyValue(s, a - BUY, gold, kit, hasSword, turn, stay);
+                }
+                return sellValue(s, a - SELL, gold, kit, turn, stay);
+        }
+    }
+
+    private float buyValue(int s, int item, int gold, int kit, boolean hasSword, float turn, float stay) {
+        int bit = 1 << item;
+        int cost = buyPrice[item];
+        if (cost < 0 || bit >= (1 << kitBits) || (kit & bit) != 0) {
+            return stay;
+        }
+        int newGold = gold;
+        if (hasSword && item == Item.BOOTS.ordinal()) {
+            // the shopkeeper hands over boots to a sword holder without checking their gold
+        } else {
+            if ((cost == 0 && item != Item.SWORD.ordinal()) || gold < cost) {
+                return stay;
+            }
+            if (!(difficulty.isSamuraiMode() && hasSword)) {
+                newGold -= cost;
+            }
+        }
+        int withItem = (s & ((1 << KIT_SHIFT) - 1)) | ((kit | bit) << KIT_SHIFT) | (newGold << goldShift);
+        return turn + values[withItem];
+    }
+
+    private float sellValue(int s, int item, int gold, int kit, float turn, float stay) {
+        int bit = 1 << item;
+        int price = sellPrice[item];
+        if (price <= 0 || (kit & bit) == 0) {
+            return stay;
+        }
+        int withoutItem = (s & ((1 << KIT_SHIFT) - 1)) | ((kit & ~bit) << KIT_SHIFT)
+                | (Math.min(gold + price, maxGold) << goldShift);
+        return turn + values[withoutItem];
+    }
+
+    /**
+     * Averages the value table over every town the hunter could arrive in, for each (gold, kit, treasures).
+     */
+    private void computeNewTownValues() {
+        double toughness = profile.getToughness();
+        IntStream.range(0, newTown.length).parallel().forEach(i -> {
+            int treasures = i & 7;
+            int kit = (i >>> 3) & ((1 << kitBits) - 1);
+            int gold = i >>> (kitBits + 3);
+            double total = 0;
+            for (int terrain = 0; terrain < terrains.length; terrain++) {
+                for (int find = 0; find < findChance.length; find++) {
+                    double chance = findChance[find] / terrains.length;
+                    total += chance * (1 - toughness) * values[stateId(gold, kit, treasures, terrain, find, false, false, false)];
+                    total += chance * toughness * values[stateId(gold, kit, treasures, terrain, find, true, false, false)];
+                }
+            }
+            newTown[i] = (float) total;
+        });
+    }
+
+    private int newTownIndex(int gold, int kit, int treasures) {
+        return (gold << (kitBits + 3)) | (kit << 3) | treasures;
+    }
+
+    /**
+     * Writes the policy to a file: a header ("THP1", difficulty, maxGold, kit bits) then one byte per state.
+     *
+     * @param file The file to write.
+     * @throws IOException if the file can't be written.
+     */
+    public void writePolicy(String file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.write(POLICY_MAGIC);
+            out.writeByte(difficulty.ordinal());
+            out.writeInt(maxGold);
+            out.writeByte(kitBits);
+            out.write(policy);
+        }
+    }
+
+    /**
+     * @param action One of the action constants.
+     * @return A short description of the action.
+     */
+    public static String describe(int action) {
+        switch (action) {
+            case HUNT:
+                return "hunt";
+            case DIG:
+                return "dig";
+            case BRAWL:
+                return "look for trouble";
+            case MOVE:
+                return "move";
+            case QUIT:
+                return "give up";
+            default:
+                if (action < SELL) {
+                    return "buy " + Item.fromOrdinal(action - BUY).getName();
+                }
+                return "sell " + Item.fromOrdinal(action - SELL).getName();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Difficulty difficulty = args.length > 0 ? Difficulty.valueOf(args[0].toUpperCase()) : Difficulty.NORMAL;
+        int maxGold = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+
+        Solver solver = new Solver(difficulty, maxGold);
+        System.out.println("Solving " + difficulty.name().toLowerCase() + " with " + solver.getStateCount() + " states");
+        long start = System.nanoTime();
+        int sweeps = solver.solve(1e-2, 5000);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int startGold = difficulty.getStartingGold();
+        int startKit = 0;
+        if (difficulty == Difficulty.TEST) {
+            for (String item : new String[] {"water", "rope", "machete", "horse", "boat", "boots"}) {
+                startKit |= Item.fromName(item).bit();
+            }
+        }
+        double cost = solver.startValue(startGold, startKit);
+        System.out.printf("Converged after %d sweeps in %.1fs%n", sweeps, seconds);
+        System.out.printf("Expected cost from the start: %.2f (turns, plus %.0f for a loss)%n", cost, PENALTY);
+
+        System.out.println("Best first move in each starting town:");
+        for (int terrain = 0; terrain < Terrain.count(); terrain++) {
+            int s = solver.stateId(startGold, startKit, 0, terrain, 0, false, false, false);
+            System.out.println("  " + Terrain.get(terrain).getTerrainName() + ": " + describe(solver.bestAction(s)));
+        }
+        if (args.length > 2) {
+            solver.writePolicy(args[2]);
+            System.out.println("Policy written to " + args[2]);
+        }
+
+        solver.evaluateWinChance(1e-6, 5000);
+        double winChance = solver.startValue(startGold, startKit);
+        System.out.printf("Chance of winning with perfect play: %.2f%%%n", 100 * winChance);
+        System.out.printf("Expected length of a game: %.1f turns%n", cost - (1 - winChance) * PENALTY);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * A RandomSource using the SplitMix64 algorithm, the same one java.util.SplittableRandom uses
+ * (and giving the same numbers for the same seed).<p>
+ * It keeps its whole state in one long that no other thread touches, so simulations on every core
+ * never wait on each other. Unlike SplittableRandom, the state can be read and put back, which is
+ * what lets a saved game carry on exactly where it left off.
+ */
+
+public class SplittableRandomSource implements RandomSource {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    // instance variables
+    private final long seed;
+    private long state;
+
+    /**
+     * @param seed The seed; two sources with the same seed produce the same numbers.
+     */
+    public SplittableRandomSource(long seed) {
+        this.seed = seed;
+        state = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The generator's current position, for saving.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Moves the generator to a position read back from getState().
+     *
+     * @param state The saved position.
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    @Override
+    public double nextDouble() {
+        return (mix64(state += GOLDEN_GAMMA) >>> 11) * DOUBLE_UNIT;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        int r = mix32(state += GOLDEN_GAMMA);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        // reject the values that would make the low numbers slightly more likely
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(state += GOLDEN_GAMMA) >>> 1) {
+        }
+        return r;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * Works out the seed of one game in a numbered batch.<p>
+     * SplitMix64 streams whose seeds differ by its internal step overlap, so the index is
+     * scrambled first rather than just added to the base seed.
+     *
+     * @param baseSeed The seed of the whole batch.
+     * @param index The number of the game within the batch.
+     * @return The seed for that game.
+     */
+    public static long seedFor(long baseSeed, long index) {
+        return mix64(baseSeed + (index + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * @return A seed for a game where the player didn't ask for one.
+     */
+    public static long randomSeed() {
+        return seedFor(System.nanoTime(), Thread.currentThread().threadId());
+    }
+}
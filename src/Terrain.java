@@ -1,56 +1,217 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * The Terrain class is designed to represent the zones between the towns in the Treasure Hunter game.
+ * The Terrain class is designed to represent the zones between the towns in the Treasure Hunter game.<p>
+ * There is only one Terrain object per kind of terrain, shared by every town, built from the TERRAINS table.
+ * Each line of the table names a terrain and the items that can be used to cross it: the first is the item
+ * the terrain needs (the one the shop and the messages talk about) and any others are alternatives, which get
+ * used up in preference to it. The items are kept as a bitmask, so checking whether a hunter can cross is one
+ * AND against the hunter's kit. load() reads a table in the same format from a file, the way
+ * PriceTable.load() reads a custom catalogue, and install() makes the game use it in place of the built-in one.
+ * The table is fixed the first time anything asks for a terrain, since PackedState, the Solver and the bots
+ * size their own tables from it, so install() has to come first.
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
 public class Terrain {
-    // instance variables
-    private String terrainName;
-    private String neededItem;
+    // the terrains a town can be surrounded by: "name=needed item|alternative|..."
+    private static final String[] TERRAINS = {
+        "Mountains=rope",
+        "Ocean=boat",
+        "Plains=horse",
+        "Desert=water",
+        "Jungle=machete|sword",
+        "Marsh=boots"
+    };
+
+    // the packed game states keep the terrain index in 3 bits, and GameEvent.CROSSED keeps the item in 4
+    private static final int MAX_TERRAINS = 8;
+    private static final int MAX_ITEM_ORDINAL = 15;
+
+    private static Terrain[] installed; // null to use TERRAINS
+    private static boolean inUse;
+
+    /**
+     * Holds the table the game plays with. It is built the first time a terrain is asked for, so reading it is
+     * a plain array lookup from then on.
+     */
+    private static class Table {
+        private static final Terrain[] ALL = choose();
 
+        private static Terrain[] choose() {
+            synchronized (Terrain.class) {
+                inUse = true;
+                return installed != null ? installed : parse(List.of(TERRAINS));
+            }
+        }
+    }
+
+    // instance variables
+    private final int index;
+    private final String terrainName;
+    private final Item neededItem;
+    private final Item[] usedFirst; // the items that can cross, alternatives first
+    private final int crossingMask;
+    private final String info;
 
     /**
      * Sets the class member variables
      *
+     * @param index The terrain's number.
      * @param name The name of the zone.
-     * @param item The item needed in order to cross the zone.
+     * @param items The items that can cross the zone, the needed item first.
      */
-    public Terrain(String name, String item) {
+    private Terrain(int index, String name, Item[] items) {
+        this.index = index;
         terrainName = name;
-        neededItem = item.toLowerCase();
+        neededItem = items[0];
+        usedFirst = new Item[items.length];
+        int mask = 0;
+        for (int i = 0; i < items.length; i++) {
+            usedFirst[i] = items[items.length - 1 - i];
+            mask |= items[i].bit();
+        }
+        crossingMask = mask;
+        info = "You are surrounded by " + terrainName + " which needs a(n) " + neededItem.getName() + " to cross.";
+    }
+
+    /**
+     * Builds the terrains from table lines.
+     *
+     * @param lines Lines of the form "name=item|item...". Blank lines and lines starting with # are skipped.
+     * @return The terrains, numbered in the order they are listed.
+     */
+    private static Terrain[] parse(List<String> lines) {
+        List<Terrain> terrains = new ArrayList<>();
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int equals = line.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Terrain line should look like name=item|item: " + line);
+            }
+            String[] names = line.substring(equals + 1).split("\\|");
+            Item[] items = new Item[names.length];
+            for (int i = 0; i < names.length; i++) {
+                items[i] = Item.fromName(names[i].trim().toLowerCase());
+                if (items[i] == null) {
+                    throw new IllegalArgumentException("Unknown item in terrain table: " + names[i]);
+                }
+            }
+            terrains.add(new Terrain(terrains.size(), line.substring(0, equals).trim(), items));
+        }
+        return terrains.toArray(new Terrain[0]);
+    }
+
+    /**
+     * Loads a custom terrain table from a file, one "name=needed item|alternative|..." line per terrain.
+     *
+     * @param file The terrain table file. Blank lines and lines starting with # are skipped.
+     * @return The terrains, numbered in the order they are listed.
+     * @throws IOException if the file can't be read.
+     */
+    public static Terrain[] load(Path file) throws IOException {
+        return parse(Files.readAllLines(file));
+    }
+
+    /**
+     * Makes the game play with the given terrains instead of the built-in ones. Call it once at startup.
+     *
+     * @param terrains The terrains, as returned by load().
+     * @throws IllegalStateException if a terrain has already been used, so the table can no longer change.
+     * @throws IllegalArgumentException if there are no terrains, or too many to fit the packed game states.
+     */
+    public static synchronized void install(Terrain[] terrains) {
+        if (inUse) {
+            throw new IllegalStateException("The terrains are already in use");
+        }
+        if (terrains.length == 0 || terrains.length > MAX_TERRAINS) {
+            throw new IllegalArgumentException("A terrain table needs 1 to " + MAX_TERRAINS + " terrains, not "
+                    + terrains.length);
+        }
+        for (Terrain terrain : terrains) {
+            for (Item item : terrain.usedFirst) {
+                if (item.ordinal() > MAX_ITEM_ORDINAL) {
+                    throw new IllegalArgumentException(item.getName() + " can't be used to cross a terrain");
+                }
+            }
+        }
+        installed = terrains.clone();
+    }
+
+    /**
+     * @return How many different terrains there are.
+     */
+    public static int count() {
+        return Table.ALL.length;
+    }
+
+    /**
+     * @param index A terrain number, from 0 to count() - 1.
+     * @return The shared Terrain with that number.
+     */
+    public static Terrain get(int index) {
+        return Table.ALL[index];
     }
 
     // accessors
+    public int getIndex() {
+        return index;
+    }
+
     public String getTerrainName() {
         return terrainName;
     }
 
     public String getNeededItem() {
+        return neededItem.getName();
+    }
+
+    public Item getRequiredItem() {
         return neededItem;
     }
 
+    /**
+     * @return The bits of every Item that can be used to cross.
+     */
+    public int getCrossingMask() {
+        return crossingMask;
+    }
+
     /**
      * Guards against a hunter crossing the zone without the proper item.
-     * Searches the hunter's inventory for the proper item and determines whether the hunter can cross.
      *
      * @param hunter The Hunter object trying to cross the terrain.
-     * @return true if the Hunter has the proper item.
+     * @return true if the Hunter has any item that crosses this terrain.
      */
     public boolean canCrossTerrain(Hunter hunter) {
-        if (hunter.hasItemInKit(neededItem)) {
-            return true;
-        }
-        if (getTerrainName() == "Jungle" && hunter.hasItemInKit("sword")) {
-            return true;
-        }
+        return (hunter.getKitMask() & crossingMask) != 0;
+    }
 
-        return false;
+    /**
+     * @param kitMask The kit of a hunter who can cross.
+     * @return The item that gets used (and may break) crossing: an alternative if the hunter has one,
+     * otherwise the needed item. null if the hunter can't cross.
+     */
+    public Item itemUsedBy(int kitMask) {
+        for (Item item : usedFirst) {
+            if ((kitMask & item.bit()) != 0) {
+                return item;
+            }
+        }
+        return null;
     }
 
     /**
      * @return A string representation of the terrain and item to cross it.
      */
     public String infoString() {
-        return "You are surrounded by "+ terrainName + " which needs a(n) " + neededItem + " to cross.";
+        return info;
     }
-}
\ No newline at end of file
+}
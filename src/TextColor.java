@@ -0,0 +1,32 @@
+/**
+ * The colors the game prints text in.<p>
+ * Each color knows its ANSI escape code (from the Colors class) for terminals and its RGB value for windows,
+ * so the game itself never has to touch java.awt.
+ */
+
+public enum TextColor {
+    BLACK(Colors.BLACK, 0x000000),
+    RED(Colors.RED, 0xFF0000),
+    GREEN(Colors.GREEN, 0x00FF00),
+    YELLOW(Colors.YELLOW, 0xFFFF00),
+    BLUE(Colors.BLUE, 0x0000FF),
+    PURPLE(Colors.PURPLE, 0xFF00FF),
+    CYAN(Colors.CYAN, 0x00FFFF),
+    WHITE(Colors.WHITE, 0xFFFFFF);
+
+    private final String ansiCode;
+    private final int rgb;
+
+    TextColor(String ansiCode, int rgb) {
+        this.ansiCode = ansiCode;
+        this.rgb = rgb;
+    }
+
+    public String getAnsiCode() {
+        return ansiCode;
+    }
+
+    public int getRgb() {
+        return rgb;
+    }
+}
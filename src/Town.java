@@ -1,5 +1,3 @@
-import java.awt.*;
-
 /**
  * The Town Class is where it all happens.
  * The Town is designed to manage all the things a Hunter can do in town.
@@ -7,55 +5,123 @@ import java.awt.*;
  */
 
 public class Town {
+    // the things that can be found by searching a town; only the last three count as treasure
+    private static final String[] FINDS = {"dust", "crown", "trophy", "gem"};
+
     // instance variables
     private Hunter hunter;
     private Shop shop;
     private Terrain terrain;
-    private String printMessage;
+    private int terrainIndex;
+    private long news; // what just happened, as GameEvents packed by GameEvent.news()
     private boolean toughTown;
     private boolean searched;
     private String treasure;
     private boolean TownDug = false;
-    private boolean EasyMode = false;
+    private DifficultyProfile profile;
     private boolean winBrawl;
+    private RandomSource random;
 
     /**
      * The Town Constructor takes in a shop and the surrounding terrain, but leaves the hunter as null until one arrives.
      *
      * @param shop The town's shoppe.
-     * @param toughness The surrounding terrain.
+     * @param profile The numbers for the difficulty being played.
+     * @param random Where the town gets its random numbers from.
      */
 
-    public Town(Shop shop, double toughness, boolean EasyMode) {
+    public Town(Shop shop, DifficultyProfile profile, RandomSource random) {
+        this(shop, profile, random, random);
+    }
+
+    /**
+     * Makes a town whose layout (terrain, toughness and treasure) comes from one random source and whose
+     * events (brawls, broken items) come from another. The World uses this to rebuild the same town
+     * from its own seed every time, while the game's random numbers still decide what happens there.
+     *
+     * @param shop The town's shoppe.
+     * @param profile The numbers for the difficulty being played.
+     * @param layout The random numbers the town is built from.
+     * @param events The random numbers used while the hunter is in town.
+     */
+    public Town(Shop shop, DifficultyProfile profile, RandomSource layout, RandomSource events) {
         this.shop = shop;
-        this.terrain = getNewTerrain();
+        this.random = events;
+        this.terrain = getNewTerrain(layout);
 
-        this.EasyMode = EasyMode;
+        this.profile = profile;
 
         // the hunter gets set using the hunterArrives method, which
         // gets called from a client class
         hunter = null;
-        printMessage = "";
+        news = 0;
         searched = false;
         // higher toughness = more likely to be a tough town
-        toughTown = (Math.random() < toughness);
-
-        double chance = Math.random();
-        if (chance > 0.5){
-            treasure ="dust" ;
-        } else if (chance > 0.5 - 0.5/3){
-            treasure = "crown";
-        } else if (chance > 0.5 - 1.0/3){
-            treasure = "trophy" ;
-        } else {
-            treasure =  "gem" ;
-        }
+        toughTown = (layout.nextDouble() < profile.getToughness());
+
+        treasure = FINDS[profile.findFor(layout.nextDouble())];
+    }
+
+    /**
+     * Rebuilds a town exactly as it was, for loading a saved game. No random numbers are used.
+     *
+     * @param shop The town's shoppe.
+     * @param profile The numbers for the difficulty being played.
+     * @param random Where the town gets its random numbers from from now on.
+     * @param terrainIndex The value getTerrainIndex() returned when the town was saved.
+     * @param toughTown Whether it's a tough town.
+     * @param findIndex The value getFindIndex() returned when the town was saved.
+     * @param searched Whether the town has been searched.
+     * @param dug Whether the town has been dug.
+     * @return The rebuilt Town, still waiting for a hunter to arrive.
+     */
+    public static Town restore(Shop shop, DifficultyProfile profile, RandomSource random, int terrainIndex,
+                               boolean toughTown, int findIndex, boolean searched, boolean dug) {
+        return new Town(shop, profile, random, terrainIndex, toughTown, findIndex, searched, dug);
+    }
+
+    private Town(Shop shop, DifficultyProfile profile, RandomSource random, int terrainIndex, boolean toughTown,
+                 int findIndex, boolean searched, boolean dug) {
+        this.shop = shop;
+        this.profile = profile;
+        this.random = random;
+        this.terrainIndex = terrainIndex;
+        terrain = Terrain.get(terrainIndex);
+        this.toughTown = toughTown;
+        treasure = FINDS[findIndex];
+        this.searched = searched;
+        TownDug = dug;
+        hunter = null;
+        news = 0;
     }
 
     public Terrain getTerrain() {
         return terrain;
     }
 
+    /**
+     * @return Which of the terrains surrounds the town, as a number from 0 to 5.
+     */
+    public int getTerrainIndex() {
+        return terrainIndex;
+    }
+
+    /**
+     * @return What searching the town turns up, as a number: 0 for dust, then crown, trophy and gem.
+     */
+    public int getFindIndex() {
+        for (int i = 0; i < FINDS.length; i++) {
+            if (FINDS[i].equals(treasure)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    public boolean isToughTown() {
+        return toughTown;
+    }
+
     public void setTownDug() {
         TownDug = true;
     }
@@ -64,14 +130,32 @@ public class Town {
         return TownDug;
     }
 
+    /**
+     * @return What just happened in town, in words. The text is only built when this is called.
+     */
     public String getLatestNews() {
-        return printMessage;
+        return GameEvent.render(news, hunter == null ? "" : hunter.getHunterName());
+    }
+
+    /**
+     * @return What just happened in town, as up to two packed GameEvents.
+     */
+    public long getNews() {
+        return news;
     }
 
-    public void setLatestNews(String message) {printMessage = message;}
+    public void setLatestNews(GameEvent event) {news = GameEvent.news(event.event());}
 
     public boolean getWinBrawl() {return winBrawl;}
 
+    public boolean getSearched() {
+        return searched;
+    }
+
+    public void setSearched() {
+        searched = true;
+    }
+
     /**
      * Assigns an object to the Hunter in town.
      *
@@ -79,11 +163,10 @@ public class Town {
      */
     public void hunterArrives(Hunter hunter) {
         this.hunter = hunter;
-        printMessage = "\nWelcome to town, " + hunter.getHunterName() + ".";
         if (toughTown) {
-            printMessage += "\nIt's pretty rough around here, so watch yourself.";
+            news = GameEvent.news(GameEvent.WELCOME_ROUGH.event());
         } else {
-            printMessage += "\nWe're just a sleepy little town with mild mannered folk.";
+            news = GameEvent.news(GameEvent.WELCOME_SLEEPY.event());
         }
     }
 
@@ -95,30 +178,42 @@ public class Town {
     public boolean leaveTown() {
         boolean canLeaveTown = terrain.canCrossTerrain(hunter);
         if (canLeaveTown) {
-            String item = terrain.getNeededItem();;
-            if (terrain.getTerrainName() == "Jungle" && hunter.hasItemInKit("sword")) {
-                item = "sword";
-            }
-
-            printMessage = "\nYou used your " + item + " to cross the " + terrain.getTerrainName() + ".";
+            Item item = terrain.itemUsedBy(hunter.getKitMask());
+            int crossed = GameEvent.CROSSED.event(item.ordinal() | terrainIndex << 4);
             if (checkItemBreak()) {
-                hunter.removeItemFromKit(item);
-                printMessage += "\nUnfortunately, you lost your " + item;
+                hunter.removeItem(item);
+                GameMetrics.INSTANCE.recordItemBroken(item);
+                news = GameEvent.news(crossed, GameEvent.ITEM_BROKE.event(item.ordinal()));
+            } else {
+                news = GameEvent.news(crossed);
             }
             return true;
         }
 
-        printMessage = "\nYou can't leave town, " + hunter.getHunterName() + ". You don't have a " + terrain.getNeededItem() + ".";
+        news = GameEvent.news(GameEvent.CANT_LEAVE.event(terrain.getRequiredItem().ordinal()));
         return false;
     }
 
     /**
-     * Handles calling the enter method on shop whenever the user wants to access the shop.
+     * Handles sending the hunter into the shop whenever the user wants to access the shop.
      *
-     * @param choice If the user wants to buy or sell items at the shop.
+     * @param buying true if the user wants to buy, false to sell.
+     * @param item The item the user asked about.
+     * @param confirmed Whether the user agreed to the price.
+     * @return What the shopkeeper said, as up to two packed GameEvents.
      */
-    public void enterShop(String choice) {
-        printMessage = shop.enter(hunter, choice);
+    public long enterShop(boolean buying, String item, boolean confirmed) {
+        shop.enter(hunter, terrainIndex);
+        // counted here rather than in Shop.enter(), which the shop dialogue also calls just to quote prices
+        GameMetrics.INSTANCE.recordShopEntry();
+        long reply;
+        if (buying) {
+            reply = shop.buy(item, confirmed);
+        } else {
+            reply = shop.sell(item, confirmed);
+        }
+        news = GameEvent.news(GameEvent.LEFT_SHOP.event());
+        return reply;
     }
 
     /**
@@ -127,46 +222,40 @@ public class Town {
      * The tougher the town, the easier it is to find a fight, and the harder it is to win one.
      */
     public void lookForTrouble() {
-        double noTroubleChance;
-        if (toughTown) {
-            noTroubleChance = 0.66;
-        } else {
-            noTroubleChance = 0.33;
-        }
-        if (Math.random() > noTroubleChance) {
-            printMessage = "\nYou couldn't find any trouble";
+        double noTroubleChance = profile.getTroubleChance(toughTown);
+        if (random.nextDouble() > noTroubleChance) {
+            news = GameEvent.news(GameEvent.NO_TROUBLE.event());
         } else {
-            printMessage =   "\nYou want trouble, stranger! You got it! " ;
-            int goldDiff = (int) (Math.random() * 10) + 1;
-            if (hunter.hasItemInKit("sword")){
+            int goldDiff = (int) (random.nextDouble() * profile.getBrawlGold()) + 1;
+            if (hunter.hasItem(Item.SWORD)){
               winBrawl = true;
-              printMessage +=  "\nSorry, please forgive me.";
-              printMessage += "\nThe brawler, seeing your sword surrendered. They gave you "+ goldDiff + " gold.";
-            } else if (Math.random() > noTroubleChance) {
+              news = GameEvent.news(GameEvent.BRAWL_SURRENDERED.event(goldDiff));
+            } else if (random.nextDouble() > noTroubleChance) {
                 winBrawl = true;
-                printMessage += "\nOof! Umph! Ow!\nOkay, stranger! You proved yer mettle. Here, take my gold.";
-                printMessage += "\nYou won the brawl and receive " + goldDiff + " gold.";
+                news = GameEvent.news(GameEvent.BRAWL_WON.event(goldDiff));
                 hunter.changeGold(goldDiff);
+                GameMetrics.INSTANCE.recordBrawl(goldDiff);
             } else {
                 winBrawl = false;
-                printMessage +=   "\nOof! Umph! Ow!\nThat'll teach you to go lookin' fer trouble in MY town! Now pay up!";
-                printMessage += "\nYou lost the brawl and pay "  + goldDiff + " gold.";
+                news = GameEvent.news(GameEvent.BRAWL_LOST.event(goldDiff));
                 hunter.changeGold(-goldDiff);
+                GameMetrics.INSTANCE.recordBrawl(-goldDiff);
             }
         }
     }
 
     public void searchTown(){
         if (searched){
-            printMessage = "\nYou have already searched this town!";
+            news = GameEvent.news(GameEvent.ALREADY_SEARCHED.event());
         } else{
             searched = true;
-            if (treasure.equals("dust")){
-                printMessage = "\nYou found " + treasure + " womp womp";
-            } else if (hunter.addTreasure(treasure)){
-                printMessage = "\nYou found " + treasure + "!";
+            Treasure found = Treasure.fromName(treasure);
+            if (found == null){
+                news = GameEvent.news(GameEvent.FOUND_DUST.event());
+            } else if (hunter.addTreasure(found)){
+                news = GameEvent.news(GameEvent.FOUND.event(found.ordinal()));
             } else {
-                printMessage = "\nYou have already found a " + treasure;
+                news = GameEvent.news(GameEvent.ALREADY_FOUND.event(found.ordinal()));
             }
         }
     }
@@ -178,23 +267,20 @@ public class Town {
     /**
      * Determines the surrounding terrain for a town, and the item needed in order to cross that terrain.
      *
-     * @return A Terrain object.
+     * @param layout The random numbers the town is built from.
+     * @return The shared Terrain object.
      */
-    private Terrain getNewTerrain() {
-        double rnd = Math.random();
-        if (rnd < (1.0/6)) {
-            return new Terrain("Mountains", "Rope");
-        } else if (rnd < 2*(1.0/6)) {
-            return new Terrain("Ocean", "Boat");
-        } else if (rnd < 3*(1.0/6)) {
-            return new Terrain("Plains", "Horse");
-        } else if (rnd < 4*(1.0/6)) {
-            return new Terrain("Desert", "Water");
-        } else if (rnd < 5*(1.0/6)){
-            return new Terrain("Jungle", "Machete");
-        } else{
-            return new Terrain("Marsh", "Boots");
+    private Terrain getNewTerrain(RandomSource layout) {
+        double rnd = layout.nextDouble();
+        int terrains = Terrain.count();
+        terrainIndex = terrains - 1;
+        for (int i = 0; i < terrains - 1; i++) {
+            if (rnd < (i + 1) * (1.0 / terrains)) {
+                terrainIndex = i;
+                break;
+            }
         }
+        return Terrain.get(terrainIndex);
     }
 
     /**
@@ -203,10 +289,10 @@ public class Town {
      * @return true if the item broke.
      */
     private boolean checkItemBreak() {
-        if (EasyMode) {
+        if (profile.getBreakChance() == 0) {
             return false;
         }
-        double rand = Math.random();
-        return (rand < 0.5);
+        double rand = random.nextDouble();
+        return (rand < profile.getBreakChance());
     }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+/**
+ * The treasures a hunter is trying to collect. Finding all three wins the game.<p>
+ * Like Item, each treasure has its own bit so the hunter's treasures fit in a single int.
+ */
+
+public enum Treasure {
+    CROWN("crown"),
+    TROPHY("trophy"),
+    GEM("gem");
+
+    private static final Treasure[] VALUES = values();
+
+    /**
+     * The mask with every treasure's bit set.
+     */
+    public static final int ALL = (1 << VALUES.length) - 1;
+
+    private final String name;
+    private final int bit;
+
+    Treasure(String name) {
+        this.name = name;
+        this.bit = 1 << ordinal();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int bit() {
+        return bit;
+    }
+
+    /**
+     * @param name The treasure name, in lower case.
+     * @return The Treasure, or null if it isn't one of the three treasures (dust, for example).
+     */
+    public static Treasure fromName(String name) {
+        for (Treasure treasure : VALUES) {
+            if (treasure.name.equals(name)) {
+                return treasure;
+            }
+        }
+        return null;
+    }
+
+    public static Treasure fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -1,125 +1,214 @@
-import javax.swing.*;
-import java.awt.*;
-import java.util.Scanner;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
 
 /**
  * This class is responsible for controlling the Treasure Hunter game.<p>
  * It handles the display of the menu and the processing of the player's choices.<p>
- * It handles all the display based on the messages it receives from the Town object. <p>
+ * The rules of the game live in the GameEngine; this class only turns what the player types into
+ * Actions and shows the Outcomes and the news from the Town. <p>
  *
  * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
  */
 
 public class TreasureHunter {
-    // static variables
-    private static final Scanner SCANNER = new Scanner(System.in);
-
     // instance variables
-    private Town currentTown;
-    private Hunter hunter;
-    private boolean hardMode;
-    private boolean easyMode;
-    private boolean samuraiMode;
+    private final GameEngine engine;
+    private GameState state;
     private boolean brawlLatest;
+    private final Renderer window; // only want one window, whichever kind it is
+    private final CommandSource input; // and only one reader of the player's input
+    private long startNanos = -1;
+    private JournalWriter journal;
+    private SnapshotFile saves;
+    private int worldTowns;
+    private Supplier<? extends BotPolicy> hints; // null unless the player can ask for hints
+    private Market market; // null for fixed prices
+    private Leaderboard leaderboard;
+    private int turns; // actions taken, or -1 for a resumed game, whose earlier turns weren't counted
 
-    OutputWindow window = new OutputWindow(); // only want one OutputWindow object
-    Scanner scan = new Scanner(System.in);
+    /**
+     * Constructs the Treasure Hunter game in a Swing window, reading from the keyboard.
+     */
+    public TreasureHunter() {
+        this(new OutputWindow(), new ReaderCommandSource(System.in));
+    }
 
     /**
      * Constructs the Treasure Hunter game.
+     *
+     * @param window Where the game shows its text.
+     * @param input Where the player's commands come from.
      */
-    public TreasureHunter() {
-        // these will be initialized in the play method
-        currentTown = null;
-        hunter = null;
-        hardMode = false;
-        easyMode = false;
-        samuraiMode = false;
+    public TreasureHunter(Renderer window, CommandSource input) {
+        this.window = window;
+        this.input = input;
+        engine = new GameEngine();
+        // this will be initialized in the play method
+        state = null;
     }
 
     /**
-     * Starts the game; this is the only public method
+     * Turns on the startup report: when the first prompt is shown, the time it took is printed to System.err.
+     *
+     * @param startNanos The System.nanoTime() when the program started.
      */
-    public void play() {
-        welcomePlayer();
+    public void reportStartupTime(long startNanos) {
+        this.startNanos = startNanos;
+    }
 
-        enterTown();
-        showMenu();
+    /**
+     * Records the game to a journal so it can be replayed later.
+     *
+     * @param journal The journal to write to. It is flushed when the game ends but not closed.
+     */
+    public void recordTo(JournalWriter journal) {
+        this.journal = journal;
+    }
 
+    /**
+     * Lets the player save their game when they quit, and carry on with it next time they use the same name.
+     *
+     * @param saves The file the games are saved in.
+     */
+    public void saveTo(SnapshotFile saves) {
+        this.saves = saves;
     }
 
     /**
-     * Creates a hunter object at the beginning of the game and populates the class member variable with it.
+     * Plays new games on a World map, so towns stay put and can be visited again.
+     * Neither the journal nor the save file records the map, so world games are neither journalled nor saved.
+     *
+     * @param towns How many towns the world has.
      */
-    private void welcomePlayer() {
-        window.addTextToWindow("\nWelcome to TREASURE HUNTER!", Color.black);
-        window.addTextToWindow("\nGoing hunting for the big treasure, eh?", Color.black);
-        window.addTextToWindow("\nWhat's your name, Hunter?", Color.black);
-        String name = SCANNER.nextLine();
-
-        // set hunter instance variable
-
-        window.addTextToWindow("\nHard(h), Normal(n), Easy(e): ", Color.black);
-        String hard = SCANNER.nextLine().toLowerCase();
-        if (hard.equals("h")) {
-            hardMode = true;
-            hunter = new Hunter(name, 20,samuraiMode,  window);
-        } else if (hard.equals("test")) {
-            hunter = new Hunter(name, 106,samuraiMode,  window);
-            hunter.buyItem("water", 1);
-            hunter.buyItem("rope", 1);
-            hunter.buyItem("machete", 1);
-            hunter.buyItem("horse", 1);
-            hunter.buyItem("boat", 1);
-            hunter.buyItem("boots", 1);
-        } else if (hard.equals("e")) {
-            easyMode = true;
-            hunter = new Hunter(name, 40,samuraiMode, window);
-        } else if (hard.equals("s")){
-            samuraiMode = true;
-            hunter = new Hunter(name,20,samuraiMode, window);
-        } else {
-            hunter = new Hunter(name, 20,samuraiMode, window);
-        }
+    public void exploreWorld(int towns) {
+        worldTowns = towns;
     }
 
     /**
-     * Creates a new town and adds the Hunter to it.
+     * Adds a hint option to the menu, which asks the given policy what it would do next.
+     * Asking for a hint doesn't use up a turn or change the game.
+     *
+     * @param hints The policy that gives the hints, for example a MonteCarloSearch or a trained QLearner.
      */
-    private void enterTown() {
-        double markdown = 0.5;
-        double toughness = 0.4;
-        if (hardMode) {
-            // in hard mode, you get less money back when you sell items
-            markdown = 0.25;
+    public void giveHints(BotPolicy hints) {
+        giveHints(() -> hints);
+    }
 
-            // and the town is "tougher"
-            toughness = 0.75;
-        }
-        if (easyMode) {
-            markdown = 1;
-            toughness = 0.2;
+    /**
+     * Adds a hint option to the menu, with a policy that is only asked for when the player first wants a hint,
+     * so one that is costly to set up (a MonteCarloSearch starts a thread pool) costs nothing until then.
+     *
+     * @param hints Gives the policy that gives the hints. Called each time a hint is asked for.
+     */
+    public void giveHints(Supplier<? extends BotPolicy> hints) {
+        this.hints = hints;
+    }
 
-        }
+    /**
+     * Makes the game's shops trade in a Market shared with other players, so prices move with what everyone buys
+     * and sells. Prices set by other players can't be replayed, so a game in a shared market isn't journalled.
+     *
+     * @param market The market to trade in.
+     */
+    public void tradeAt(Market market) {
+        this.market = market;
+    }
 
-        // note that we don't need to access the Shop object
-        // outside of this method, so it isn't necessary to store it as an instance
-        // variable; we can leave it as a local variable
-        Shop shop = new Shop(markdown);
+    /**
+     * Puts the game on a Leaderboard when it is won or lost, and shows the best games on the same mode.
+     *
+     * @param leaderboard The board to record the game on. It is flushed when the game ends but not closed.
+     */
+    public void recordScoresIn(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
 
-        // creating the new Town -- which we need to store as an instance
-        // variable in this class, since we need to access the Town
-        // object in other methods of this class
+    /**
+     * Starts the game
+     */
+    public void play() {
+        try {
+            welcomePlayer();
+            if (market != null) {
+                state.tradeAt(market);
+            }
+            showMenu();
+        } catch (NoSuchElementException e) {
+            // the input ran out part way through; the player has walked away from the game
+        }
+        window.flush();
+        if (journal != null) {
+            try {
+                journal.flush();
+            } catch (IOException e) {
+                journalFailed(e);
+            }
+        }
+    }
 
-        currentTown = new Town(shop, toughness, easyMode);
+    /**
+     * A broken journal shouldn't end the game, so recording just stops.
+     */
+    private void journalFailed(IOException e) {
+        System.err.println("Stopped recording the journal: " + e.getMessage());
+        journal = null;
+    }
 
+    /**
+     * Creates the game state at the beginning of the game, which places the hunter in their first town.
+     */
+    private void welcomePlayer() {
+        window.print("\nWelcome to TREASURE HUNTER!", TextColor.BLACK);
+        window.print("\nGoing hunting for the big treasure, eh?", TextColor.BLACK);
+        window.print("\nWhat's your name, Hunter?", TextColor.BLACK);
+        if (startNanos >= 0) {
+            long now = System.currentTimeMillis();
+            long sinceMain = (System.nanoTime() - startNanos) / 1_000_000;
+            // the management classes are only loaded after the clock has been read, so they aren't counted
+            long sinceJvm = now - ManagementFactory.getRuntimeMXBean().getStartTime();
+            System.err.println("Time to first prompt: " + sinceMain + " ms from main, " + sinceJvm + " ms from JVM start");
+        }
+        String name = readLine();
 
+        if (saves != null) {
+            GameState saved = saves.load(name);
+            if (saved != null) {
+                window.print("\nWelcome back, " + name + "! Carry on with your saved game (y/n)? ", TextColor.BLACK);
+                if (readLine().toLowerCase().equals("y")) {
+                    state = saved;
+                    // a journal can only replay games from their very start, so a resumed game isn't recorded
+                    journal = null;
+                    turns = -1;
+                    return;
+                }
+            }
+        }
 
-        // calling the hunterArrives method, which takes the Hunter
-        // as a parameter; note this also could have been done in the
-        // constructor for Town, but this illustrates another way to associate
-        // an object with an object of a different class
-        currentTown.hunterArrives(hunter);
+        window.print("\nHard(h), Normal(n), Easy(e): ", TextColor.BLACK);
+        String hard = readLine().toLowerCase();
+        if (worldTowns > 0) {
+            state = new GameState(name, Difficulty.fromMenuChoice(hard), SplittableRandomSource.randomSeed(), worldTowns, 1024);
+        } else {
+            state = new GameState(name, Difficulty.fromMenuChoice(hard));
+        }
+        if (market != null) {
+            // prices set by other players can't be replayed
+            journal = null;
+        }
+        if (journal != null && state.getWorld() != null) {
+            window.print("\nGames on a world map can't be recorded to the journal yet, so this one won't be.", TextColor.RED);
+            journal = null;
+        }
+        if (journal != null) {
+            try {
+                journal.startGame(state);
+            } catch (IOException e) {
+                journalFailed(e);
+            }
+        }
     }
 
     /**
@@ -128,90 +217,203 @@ public class TreasureHunter {
      * This method will loop until the user chooses to exit.
      */
     private void showMenu() {
-        String choice = "";
-        while (!choice.equals("x")) {
-
-            window.addTextToWindow("\n", Color.black);
-            if (brawlLatest){
-                window.addTextToWindow(currentTown.getLatestNews(), Color.black);
-                if (currentTown.getWinBrawl()){
-                    currentTown.setLatestNews("\nYou won a brawl.");
+        Hunter hunter = state.getHunter();
+        Outcome.Status status = Outcome.Status.PLAYING;
+        while (status != Outcome.Status.QUIT) {
+            Town currentTown = state.getTown();
+
+            window.print("\n", TextColor.BLACK);
+            window.print(currentTown.getLatestNews(), TextColor.BLACK);
+            if (brawlLatest) {
+                if (currentTown.getWinBrawl()) {
+                    currentTown.setLatestNews(GameEvent.WON_A_BRAWL);
                 } else {
-                    currentTown.setLatestNews("\nYou lost a brawl.");
+                    currentTown.setLatestNews(GameEvent.LOST_A_BRAWL);
                 }
-            }else {
-                window.addTextToWindow(currentTown.getLatestNews(), Color.black);
             }
-            if (hunter.getBankruptcy()) {
-                window.addTextToWindow("\nGame Over", Color.red);
+            if (status == Outcome.Status.LOST) {
+                window.print("\nGame Over", TextColor.RED);
+                forgetSave();
+                recordScore();
                 break;
             }
-            if (hunter.emptyPositionInTreasures() == -1){
-                window.addTextToWindow("\nCongratulations, you have found the last of the three treasures, you win!", Color.green);
+            if (status == Outcome.Status.WON) {
+                window.print("\nCongratulations, you have found the last of the three treasures, you win!", TextColor.GREEN);
+                forgetSave();
+                recordScore();
                 break;
             }
-            window.addTextToWindow("\n***\n", Color.black);
-            window.addTextToWindow(hunter.infoString(), Color.black);
-            window.addTextToWindow(currentTown.infoString(), Color.black);
-            window.addTextToWindow("\n(B)uy something at the shop.", Color.black);
-            window.addTextToWindow("\n(S)ell something at the shop.", Color.black);
-            window.addTextToWindow("\n(E)xplore surrounding terrain.", Color.black);
-            window.addTextToWindow("\n(H)unt for treasure in the town.", Color.black);
-            window.addTextToWindow("\n(M)ove on to a different town.", Color.black);
-            window.addTextToWindow("\n(L)ook for trouble!", Color.black);
-            window.addTextToWindow("\n(D)ig for gold", Color.black);
-            window.addTextToWindow("\nGive up the hunt and e(X)it.", Color.black);
-            window.addTextToWindow("\n", Color.black);
-            window.addTextToWindow("\nWhat's your next move? ", Color.black);
+            window.print("\n***\n", TextColor.BLACK);
+            window.print(hunter.infoString(), TextColor.BLACK);
+            window.print(currentTown.infoString(), TextColor.BLACK);
+            window.print("\n(B)uy something at the shop.", TextColor.BLACK);
+            window.print("\n(S)ell something at the shop.", TextColor.BLACK);
+            window.print("\n(E)xplore surrounding terrain.", TextColor.BLACK);
+            window.print("\n(H)unt for treasure in the town.", TextColor.BLACK);
+            window.print("\n(M)ove on to a different town.", TextColor.BLACK);
+            window.print("\n(L)ook for trouble!", TextColor.BLACK);
+            window.print("\n(D)ig for gold", TextColor.BLACK);
+            window.print("\nGive up the hunt and e(X)it.", TextColor.BLACK);
+            if (hints != null) {
+                window.print("\n(?) Ask for a hint.", TextColor.BLACK);
+            }
+            window.print("\n", TextColor.BLACK);
+            window.print("\nWhat's your next move? ", TextColor.BLACK);
 
-            choice = SCANNER.nextLine().toLowerCase();
-            processChoice(choice);
+            String choice = readLine().toLowerCase().trim();
+            status = processChoice(choice, status);
         }
+        if (status == Outcome.Status.QUIT && saves != null) {
+            if (state.getWorld() != null) {
+                // a slot has no room for the map's flag table, and resuming without it would lose the world
+                window.print("\nGames on a world map can't be saved yet, so this one wasn't.", TextColor.RED);
+            } else if (saves.save(state)) {
+                window.print("\nYour game has been saved.", TextColor.BLACK);
+            } else {
+                window.print("\nThe save file is full, so your game couldn't be saved.", TextColor.RED);
+            }
+        }
+    }
+
+    /**
+     * Makes sure the player can see everything printed so far, then waits for their next line of input.
+     */
+    private String readLine() {
+        window.flush();
+        return input.nextLine();
     }
 
     /**
-     * Takes the choice received from the menu and calls the appropriate method to carry out the instructions.
+     * Puts the finished game on the leaderboard and shows the top five for its mode.
+     * A resumed game isn't recorded, since the turns it took before it was saved weren't counted.
+     */
+    private void recordScore() {
+        if (leaderboard == null || turns < 0) {
+            return;
+        }
+        Hunter hunter = state.getHunter();
+        Difficulty mode = state.getDifficulty();
+        try {
+            leaderboard.record(hunter.getHunterName(), mode, turns, hunter.getGold(),
+                    Integer.bitCount(hunter.getTreasureMask()));
+            leaderboard.flush();
+        } catch (IOException e) {
+            System.err.println("Couldn't write the leaderboard: " + e.getMessage());
+        }
+        window.print("\n\nBest hunters on " + mode.name().toLowerCase() + ":", TextColor.BLACK);
+        List<Leaderboard.Entry> top = leaderboard.top(mode, 5);
+        for (int i = 0; i < top.size(); i++) {
+            window.print("\n" + (i + 1) + ". " + top.get(i), TextColor.BLACK);
+        }
+    }
+
+    /**
+     * A finished game can't be carried on, so its save is removed.
+     */
+    private void forgetSave() {
+        if (saves != null) {
+            saves.delete(state.getHunter().getHunterName());
+        }
+    }
+
+    /**
+     * Takes the choice received from the menu and hands the matching action to the engine.
+     * For buying and selling, the item and the y/n answer may follow the letter on the same line.
+     *
      * @param choice The action to process.
+     * @param status The state of the game before the choice.
+     * @return The state of the game after the choice.
      */
-    private void processChoice(String choice) {
+    private Outcome.Status processChoice(String choice, Outcome.Status status) {
         window.clear();
-        if (choice.equals("b") || choice.equals("s")) {
-            brawlLatest = false;
-            currentTown.enterShop(choice);
-        } else if (choice.equals("e")) {
-            window.addTextToWindow(currentTown.getTerrain().infoString(), Color.black);
-        } else if (choice.equals("m")) {
-            brawlLatest = false;
-            if (currentTown.leaveTown()) {
-                // This town is going away so print its news ahead of time.
-                window.addTextToWindow(currentTown.getLatestNews(), Color.black);
-                enterTown();
-            }
-        } else if (choice.equals("l")) {
-            brawlLatest = true;
-            currentTown.lookForTrouble();
-        } else if (choice.equals("h")){
+        Action action;
+        String[] words = choice.split("\\s+");
+        if (words[0].equals("?") && hints != null) {
+            window.print("\nHint: " + hints.get().hint(state) + ".", TextColor.GREEN);
+            return status;
+        }
+        if (words[0].equals("b") || words[0].equals("s")) {
             brawlLatest = false;
-            currentTown.searchTown();
-        } else if (choice.equals("x")) {
-            window.addTextToWindow("\nFare thee well, " + hunter.getHunterName() + "!", Color.black);
-        } else if (choice.equals("d")) {
-            if (hunter.hasItemInKit("shovel") && !currentTown.getTownDug() ) {
-                if (Math.random() > 0.5) {
-                    int goldDigged = (int)(Math.random() * 21);
-                    window.addTextToWindow("\nYou dug up " + goldDigged + " gold", Color.black);
-                    hunter.changeGold(goldDigged);
-                } else {
-                    window.addTextToWindow("\nYou dug but only found dirt",Color.black);
-                }
-                currentTown.setTownDug();
-            } else if (currentTown.getTownDug()) {
-                window.addTextToWindow("\nYou already dug for gold in this town.",Color.red);
-            } else {
-                window.addTextToWindow("\nYou can't dig for gold without a shovel TRY GOING TO THE SHOP TO BUY THE SHOVEL" ,Color.red);
+            action = shopDialogue(words[0].equals("b"), words);
+        } else {
+            action = Action.fromMenuChoice(choice);
+            if (action == null) {
+                GameMetrics.INSTANCE.recordInvalidChoice();
+                window.print("\nYikes! That's an invalid option! Try again.", TextColor.RED);
+                return status;
+            }
+            if (action.getType() == Action.Type.BRAWL) {
+                brawlLatest = true;
+            } else if (action.getType() == Action.Type.MOVE || action.getType() == Action.Type.HUNT) {
+                brawlLatest = false;
+            }
+        }
+
+        if (journal != null) {
+            try {
+                journal.record(action);
+            } catch (IOException e) {
+                journalFailed(e);
+            }
+        }
+        if (turns >= 0) {
+            turns++;
+        }
+        long start = System.nanoTime();
+        Outcome outcome = engine.step(state, action);
+        GameMetrics.INSTANCE.recordAction(action.getType(), System.nanoTime() - start);
+        if (!outcome.getMessage().isEmpty()) {
+            window.print(outcome.getMessage(), outcome.isAlert() ? TextColor.RED : TextColor.BLACK);
+        }
+        return outcome.getStatus();
+    }
+
+    /**
+     * Asks the player which item they want to buy or sell and whether they accept the price,
+     * skipping any question that was already answered on the command line.
+     *
+     * @param buying true if the player is buying, false if selling.
+     * @param words The command split into words: the letter, then optionally the item and the y/n answer.
+     * @return The buy or sell action with the player's answers filled in.
+     */
+    private Action shopDialogue(boolean buying, String[] words) {
+        Shop shop = state.getShop();
+        // the same region Town.enterShop() trades in, so the price quoted is the price charged
+        shop.enter(state.getHunter(), state.getTown().getTerrainIndex());
+        String item;
+        if (words.length > 1) {
+            item = words[1];
+        } else if (buying) {
+            window.print("\nWelcome to the shop! We have the finest wares in town.", TextColor.BLACK);
+            window.print("\nCurrently we have the following items:", TextColor.BLACK);
+            window.print(shop.inventory(), TextColor.BLACK);
+            window.print("\nWhat're you lookin' to buy? ", TextColor.BLACK);
+            item = readLine().toLowerCase();
+        } else {
+            window.print("\nWhat're you lookin' to sell? ", TextColor.BLACK);
+            window.print("\nYou currently have the following items: " + state.getHunter().getInventory(), TextColor.BLACK);
+            item = readLine().toLowerCase();
+        }
+
+        if (buying) {
+            if (!shop.isForSale(item)) {
+                return Action.buy(item, false);
             }
+            if (words.length > 2) {
+                return Action.buy(item, words[2].equals("y"));
+            }
+            window.print("\nIt'll cost you " + shop.checkMarketPrice(item, true) + " gold. Buy it (y/n)? ", TextColor.BLACK);
+            return Action.buy(item, readLine().toLowerCase().equals("y"));
         } else {
-            window.addTextToWindow("\nYikes! That's an invalid option! Try again.",Color.red);
+            int cost = shop.checkMarketPrice(item, false);
+            if (cost == 0) {
+                return Action.sell(item, false);
+            }
+            if (words.length > 2) {
+                return Action.sell(item, words[2].equals("y"));
+            }
+            window.print("\nIt'll get you " + cost + " gold. Sell it (y/n)? ", TextColor.BLACK);
+            return Action.sell(item, readLine().toLowerCase().equals("y"));
         }
     }
-}
\ No newline at end of file
+}
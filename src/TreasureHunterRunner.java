@@ -1,6 +1,179 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+/**
+ * Starts the game. Pass --console to play in the terminal instead of a window;
+ * the terminal is also used automatically when there is no display.
+ * Pass --timing to print how long it took to reach the first prompt,
+ * --journal followed by a file name to record the game for JournalReplayer,
+ * --save followed by a file name to save the game on quitting and carry on with it later,
+ * --script followed by a file name to play the commands in the file instead of reading the keyboard,
+ * --world followed by a number of towns to travel a fixed map instead of finding a new town on every move
+ * (world games aren't journalled or saved),
+ * --hints followed by a table file written by QLearner to take hints from it instead of a MonteCarloSearch,
+ * --hint-millis followed by how long the MonteCarloSearch may think about each hint (50 ms unless given),
+ * --leaderboard followed by a file name to record finished games on a Leaderboard,
+ * --terrains followed by a file name to play with the terrain table in the file (see Terrain.load()),
+ * --metrics followed by a number of seconds to print the GameMetrics report that often,
+ * and --jmx to make the GameMetrics readable through JMX. Registering with JMX loads the java.lang.management
+ * classes, which takes longer than the rest of startup put together, so it is only done when asked for
+ * (--metrics implies it).
+ * A script can hold any number of games one after another; they are played back to back.<p>
+ * The menu always has a (?) option that suggests a move; the suggestion is worked out in the background
+ * threads of the MonteCarloSearch, so the game itself is never touched. The search and its threads are only
+ * started the first time a hint is asked for, and are stopped when the last game ends.<p>
+ * The display check only looks at system properties and environment variables, so a console game
+ * never loads any AWT classes.
+ */
 public class TreasureHunterRunner {
-    public static void main(String[] args) {
-        TreasureHunter startGame = new TreasureHunter();
-        startGame.play();
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        boolean console = false;
+        boolean timing = false;
+        Path journalFile = null;
+        Path saveFile = null;
+        Path scriptFile = null;
+        int worldTowns = 0;
+        int metricsSeconds = 0;
+        boolean jmx = false;
+        Path hintsFile = null;
+        long hintMillis = 50;
+        Path leaderboardFile = null;
+        Path terrainFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--console")) {
+                console = true;
+            } else if (args[i].equals("--timing")) {
+                timing = true;
+            } else if (args[i].equals("--journal") && i + 1 < args.length) {
+                journalFile = Path.of(args[++i]);
+            } else if (args[i].equals("--save") && i + 1 < args.length) {
+                saveFile = Path.of(args[++i]);
+            } else if (args[i].equals("--script") && i + 1 < args.length) {
+                scriptFile = Path.of(args[++i]);
+            } else if (args[i].equals("--world") && i + 1 < args.length) {
+                worldTowns = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--jmx")) {
+                jmx = true;
+            } else if (args[i].equals("--metrics") && i + 1 < args.length) {
+                metricsSeconds = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--hints") && i + 1 < args.length) {
+                hintsFile = Path.of(args[++i]);
+            } else if (args[i].equals("--hint-millis") && i + 1 < args.length) {
+                hintMillis = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--leaderboard") && i + 1 < args.length) {
+                leaderboardFile = Path.of(args[++i]);
+            } else if (args[i].equals("--terrains") && i + 1 < args.length) {
+                terrainFile = Path.of(args[++i]);
+            }
+        }
+        if (terrainFile != null) {
+            // before anything builds a town or sizes a table by the number of terrains
+            Terrain.install(Terrain.load(terrainFile));
+        }
+        if (jmx || metricsSeconds > 0) {
+            GameMetrics.INSTANCE.register();
+        }
+        if (metricsSeconds > 0) {
+            GameMetrics.INSTANCE.startReports(metricsSeconds, System.err);
+        }
+
+        Renderer window;
+        if (console || isHeadless()) {
+            window = new ConsoleRenderer();
+        } else {
+            window = new OutputWindow();
+        }
+        CommandSource input;
+        if (scriptFile != null) {
+            input = ScriptCommandSource.load(scriptFile);
+        } else {
+            input = new ReaderCommandSource(System.in);
+        }
+        SnapshotFile saves = saveFile == null ? null : new SnapshotFile(saveFile, 4096);
+        JournalWriter journal = journalFile == null ? null : new JournalWriter(journalFile);
+        LazySearch search = new LazySearch(hintMillis);
+        Supplier<? extends BotPolicy> hints = search;
+        if (hintsFile != null) {
+            QLearner learner = QLearner.load(hintsFile);
+            hints = () -> learner;
+        }
+        Leaderboard leaderboard = leaderboardFile == null ? null : new Leaderboard(leaderboardFile);
+
+        do {
+            TreasureHunter startGame = new TreasureHunter(window, input);
+            if (timing) {
+                startGame.reportStartupTime(start);
+                timing = false;
+            }
+            startGame.exploreWorld(worldTowns);
+            startGame.giveHints(hints);
+            if (saves != null) {
+                startGame.saveTo(saves);
+            }
+            if (leaderboard != null) {
+                startGame.recordScoresIn(leaderboard);
+            }
+            if (journal != null) {
+                startGame.recordTo(journal);
+            }
+            startGame.play();
+        } while (scriptFile != null && input.hasNext());
+
+        search.close();
+        if (journal != null) {
+            journal.close();
+        }
+        if (saves != null) {
+            saves.close();
+        }
+        if (leaderboard != null) {
+            leaderboard.close();
+        }
+    }
+
+    /**
+     * Works out whether there is a screen to open a window on, without asking AWT
+     * (which would load the toolkit just to answer).
+     */
+    private static boolean isHeadless() {
+        if (Boolean.getBoolean("java.awt.headless")) {
+            return true;
+        }
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.contains("win") || os.contains("mac")) {
+            return false;
+        }
+        return System.getenv("DISPLAY") == null && System.getenv("WAYLAND_DISPLAY") == null;
+    }
+
+    /**
+     * Makes the MonteCarloSearch the first time a hint is asked for, and keeps it for the rest of the run.
+     */
+    private static class LazySearch implements Supplier<MonteCarloSearch> {
+        private final long budgetMillis;
+        private MonteCarloSearch search;
+
+        LazySearch(long budgetMillis) {
+            this.budgetMillis = budgetMillis;
+        }
+
+        @Override
+        public MonteCarloSearch get() {
+            if (search == null) {
+                search = new MonteCarloSearch(budgetMillis);
+            }
+            return search;
+        }
+
+        /**
+         * Stops the search's threads, if it was ever started.
+         */
+        void close() {
+            if (search != null) {
+                search.close();
+            }
+        }
     }
 }
@@ -0,0 +1,131 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The World is a fixed map of towns that the hunter travels between, instead of a brand new town on every move.<p>
+ * Towns are numbered from 0 and each one is built from its own seed (worked out from the world seed and
+ * the town's number), so a town only has to exist while it is being used. Recently visited towns are kept
+ * in a small least-recently-used cache; a town that falls out of the cache is simply rebuilt, identically,
+ * the next time it is visited. The only things that change about a town -- whether it has been searched or
+ * dug -- are kept in a table of two bits per town, so even a world of millions of towns uses very little memory.<p>
+ * Every town has a few neighbours on the other side of its terrain. Town n always leads to town n + 1,
+ * so every town can be reached; the others are scattered across the world.
+ */
+
+public class World {
+    private static final int NEIGHBOURS = 3;
+    private static final int SEARCHED = 1;
+    private static final int DUG = 2;
+
+    // instance variables
+    private final long worldSeed;
+    private final int townCount;
+    private final DifficultyProfile profile;
+    private final RandomSource events;
+    private final Shop shop;
+    private final long[] flags; // 2 bits per town, 32 towns per long
+    private final Map<Integer, Town> cache;
+
+    /**
+     * @param worldSeed The seed every town is built from.
+     * @param townCount How many towns there are.
+     * @param profile The numbers for the difficulty being played, which set how tough the towns are.
+     * @param events The game's random numbers, used for whatever happens in the towns.
+     * @param cacheSize How many towns to keep built at once.
+     */
+    public World(long worldSeed, int townCount, DifficultyProfile profile, RandomSource events, int cacheSize) {
+        this.worldSeed = worldSeed;
+        this.townCount = townCount;
+        this.profile = profile;
+        this.events = events;
+        shop = new Shop(profile.getPrices());
+        flags = new long[(townCount + 31) / 32];
+        cache = new LinkedHashMap<>(cacheSize * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Town> eldest) {
+                if (size() > cacheSize) {
+                    remember(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getTownCount() {
+        return townCount;
+    }
+
+    public Shop getShop() {
+        return shop;
+    }
+
+    /**
+     * Finds a town, building it if it isn't in the cache.
+     *
+     * @param townId The town's number.
+     * @return The Town.
+     */
+    public Town town(int townId) {
+        Town town = cache.get(townId);
+        if (town == null) {
+            town = build(townId);
+            cache.put(townId, town);
+        }
+        return town;
+    }
+
+    /**
+     * @param townId The town's number.
+     * @param which Which neighbour, from 0 to 2.
+     * @return The number of the neighbouring town.
+     */
+    public int neighbour(int townId, int which) {
+        if (which == 0) {
+            return (townId + 1) % townCount;
+        }
+        long hash = SplittableRandomSource.seedFor(worldSeed ^ ((long) townId << 2), which);
+        return (int) Math.floorMod(hash, (long) townCount);
+    }
+
+    /**
+     * Picks which neighbour the hunter ends up in after crossing the terrain around a town.
+     *
+     * @param townId The town being left.
+     * @return The number of the town arrived at.
+     */
+    public int travelFrom(int townId) {
+        return neighbour(townId, events.nextInt(NEIGHBOURS));
+    }
+
+    /**
+     * The town's layout comes from its own seed, so it is the same every time it is built.
+     */
+    private Town build(int townId) {
+        RandomSource layout = new SplittableRandomSource(SplittableRandomSource.seedFor(worldSeed, townId));
+        Town town = new Town(shop, profile, layout, events);
+        int bits = (int) (flags[townId >>> 5] >>> ((townId & 31) << 1)) & 3;
+        if ((bits & SEARCHED) != 0) {
+            town.setSearched();
+        }
+        if ((bits & DUG) != 0) {
+            town.setTownDug();
+        }
+        return town;
+    }
+
+    /**
+     * Copies the parts of a town that can change into the flag table before the town is dropped from the cache.
+     */
+    private void remember(int townId, Town town) {
+        long bits = 0;
+        if (town.getSearched()) {
+            bits |= SEARCHED;
+        }
+        if (town.getTownDug()) {
+            bits |= DUG;
+        }
+        int shift = (townId & 31) << 1;
+        flags[townId >>> 5] = (flags[townId >>> 5] & ~(3L << shift)) | (bits << shift);
+    }
+}